@@ -0,0 +1,31 @@
+package com.hmall.cart.config;
+
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CartMqConfig {
+
+    /**
+     * 批量消费的监听容器，一次最多取clearBatchSize条消息交给监听器，处理完成后整批确认
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory cartClearContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            CartProperties cartProperties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        int batchSize = cartProperties.getClearBatchSize();
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(cartProperties.getClearReceiveTimeout().toMillis());
+        // 预取数量小于批大小时，每批都要等到receiveTimeout才能凑满
+        factory.setPrefetchCount(Math.max(batchSize, 250));
+        return factory;
+    }
+}
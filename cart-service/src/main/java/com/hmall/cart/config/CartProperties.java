@@ -5,9 +5,51 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "hm.cart")
 public class CartProperties {
     private Integer maxItems;
+    /**
+     * 本地商品快照最多缓存的商品数量
+     */
+    private Long snapshotMaxSize = 100000L;
+    /**
+     * 商品快照的过期时间，变更消息丢失时的兜底
+     */
+    private Duration snapshotExpire = Duration.ofMinutes(30);
+    /**
+     * 合并商品变更后刷新快照的窗口，单位毫秒，窗口内同一商品的多次变更只查询一次item-service
+     */
+    private Long snapshotRefreshWindow = 500L;
+    /**
+     * 购物车存储模式：db-直接读写数据库，redis-读写Redis并异步写回数据库，local-本地内存（离线测试用）
+     */
+    private String store = "db";
+    /**
+     * 有变更的购物车写回数据库的间隔，单位毫秒
+     */
+    private Long flushInterval = 1000L;
+    /**
+     * 每轮最多写回的用户数量
+     */
+    private Integer flushBatchSize = 200;
+    /**
+     * Redis中购物车相关key的前缀
+     */
+    private String keyPrefix = "hm:cart:";
+    /**
+     * Redis中购物车的过期时间，每次修改后重新计算，过期后下次访问从数据库加载
+     */
+    private Duration storeTtl = Duration.ofDays(7);
+    /**
+     * 下单后清理购物车时，每批最多消费的消息数量
+     */
+    private Integer clearBatchSize = 100;
+    /**
+     * 凑批时等待消息的最长时间，超时后不足一批也会处理
+     */
+    private Duration clearReceiveTimeout = Duration.ofMillis(200);
 }
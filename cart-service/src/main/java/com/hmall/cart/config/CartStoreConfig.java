@@ -0,0 +1,19 @@
+package com.hmall.cart.config;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.cart.store.CartLoader;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class CartStoreConfig {
+
+    @Bean
+    public CartLoader cartLoader(CartMapper cartMapper) {
+        return userId -> cartMapper.selectList(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId));
+    }
+}
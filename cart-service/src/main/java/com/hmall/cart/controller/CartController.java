@@ -1,6 +1,7 @@
 package com.hmall.cart.controller;
 
 
+import com.hmall.cart.domain.dto.CartBatchDTO;
 import com.hmall.cart.domain.dto.CartFormDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
@@ -31,13 +32,19 @@ public class CartController {
     @ApiOperation("更新购物车数据")
     @PutMapping
     public void updateCart(@RequestBody Cart cart) {
-        cartService.updateById(cart);
+        cartService.updateCart(cart);
+    }
+
+    @ApiOperation("批量修改购物车，按顺序执行加入、修改数量、删除操作，返回修改后的购物车")
+    @PostMapping("/batch")
+    public List<CartVO> batchUpdateCarts(@Valid @RequestBody CartBatchDTO cartBatchDTO) {
+        return cartService.batchUpdateCarts(cartBatchDTO.getOps());
     }
 
     @ApiOperation("删除购物车中商品")
     @DeleteMapping("{id}")
     public void deleteCartItem(@Param("购物车条目id") @PathVariable("id") Long id) {
-        cartService.removeById(id);
+        cartService.removeCartItem(id);
     }
 
     @ApiOperation("查询购物车列表")
@@ -0,0 +1,20 @@
+package com.hmall.cart.domain.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@ApiModel(description = "购物车批量修改表单实体")
+public class CartBatchDTO {
+    @Valid
+    @NotEmpty(message = "操作不能为空")
+    @Size(max = 100, message = "一次最多100个操作")
+    @ApiModelProperty("按顺序执行的操作列表")
+    private List<CartOpDTO> ops;
+}
@@ -0,0 +1,33 @@
+package com.hmall.cart.domain.dto;
+
+import com.hmall.cart.enums.CartOpType;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+@Accessors(chain = true)
+@ApiModel(description = "购物车批量修改中的单个操作")
+public class CartOpDTO {
+    @NotNull(message = "操作类型不能为空")
+    @ApiModelProperty("操作类型：ADD-加入购物车，SET-修改数量，REMOVE-删除")
+    private CartOpType op;
+    @NotNull(message = "商品id不能为空")
+    @ApiModelProperty("商品id")
+    private Long itemId;
+    @Min(value = 1, message = "购买数量不能小于1")
+    @ApiModelProperty("ADD时为增加的数量，默认为1；SET时为修改后的数量，必填")
+    private Integer num;
+    @ApiModelProperty("商品标题，新增条目时使用")
+    private String name;
+    @ApiModelProperty("商品动态属性键值集，新增条目时使用")
+    private String spec;
+    @ApiModelProperty("价格,单位：分，新增条目时使用")
+    private Integer price;
+    @ApiModelProperty("商品图片，新增条目时使用")
+    private String image;
+}
@@ -0,0 +1,18 @@
+package com.hmall.cart.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum CartOpType {
+    ADD(1, "加入购物车，已存在则累加数量"),
+    SET(2, "修改购买数量"),
+    REMOVE(3, "从购物车删除"),
+    ;
+    private final int value;
+    private final String desc;
+
+    CartOpType(int value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+}
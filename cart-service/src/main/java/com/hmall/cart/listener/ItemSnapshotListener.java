@@ -0,0 +1,32 @@
+package com.hmall.cart.listener;
+
+import com.hmall.cart.snapshot.ItemSnapshotStore;
+import com.hmall.common.constants.ItemMqConstants;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 商品变更时登记需要刷新的本地商品快照，由ItemSnapshotStore按窗口合并后刷新，每个实例都有自己的快照，所以使用匿名队列
+ */
+@Component
+@RequiredArgsConstructor
+public class ItemSnapshotListener {
+
+    private final ItemSnapshotStore itemSnapshotStore;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(value = ItemMqConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMqConstants.ALL_KEY
+    ))
+    public void listenItemChanged(List<Long> itemIds) {
+        itemSnapshotStore.refresh(itemIds);
+    }
+}
@@ -2,38 +2,60 @@ package com.hmall.cart.listener;
 
 
 import com.hmall.cart.service.ICartService;
-import com.hmall.cart.service.impl.CartServiceImpl;
 
-import com.hmall.common.utils.UserContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Component
 @Slf4j
 public class OrderCreatedListener {
     private final ICartService cartService;
+    private final MessageConverter messageConverter;
 
-    public OrderCreatedListener(ICartService cartService) {
+    public OrderCreatedListener(ICartService cartService, MessageConverter messageConverter) {
         this.cartService = cartService;
+        this.messageConverter = messageConverter;
     }
 
 
+    /**
+     * 批量消费下单消息，按用户合并要删除的商品后一次删除，整批消息一起确认
+     */
     @RabbitListener(bindings = @QueueBinding(
             value = @Queue(name = "cart.clear.queue", durable = "true"),
             exchange = @Exchange(value = "trade.topic", type = "topic"),
             key = "order.create"
-    ))
-    public void listenerOrderCreated(Message message, List<Long> ids) {
-        Long userId = message.getMessageProperties().getHeader("user_INFO");
-        UserContext.setUser(userId);
-        cartService.removeByItemIds(ids);
-        UserContext.removeUser();
+    ), containerFactory = "cartClearContainerFactory")
+    public void listenerOrderCreated(List<Message> messages) {
+        Map<Long, Set<Long>> itemIdsByUser = new HashMap<>();
+        for (Message message : messages) {
+            Long userId = message.getMessageProperties().getHeader("user_INFO");
+            if (userId == null) {
+                log.warn("下单消息中缺少用户信息，忽略：{}", message.getMessageProperties().getMessageId());
+                continue;
+            }
+            Set<Long> itemIds = itemIdsByUser.computeIfAbsent(userId, id -> new HashSet<>());
+            for (Object itemId : (Collection<?>) messageConverter.fromMessage(message)) {
+                itemIds.add(((Number) itemId).longValue());
+            }
+        }
+        if (itemIdsByUser.isEmpty()) {
+            return;
+        }
+        cartService.removeByUserItems(itemIdsByUser);
+        log.debug("批量清理购物车完成，消息数量：{}，用户数量：{}", messages.size(), itemIdsByUser.size());
     }
 }
@@ -2,8 +2,12 @@ package com.hmall.cart.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.hmall.cart.domain.po.Cart;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
-import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * <p>
@@ -15,6 +19,49 @@ import org.apache.ibatis.annotations.Update;
  */
 public interface CartMapper extends BaseMapper<Cart> {
 
-    @Update("UPDATE cart SET num = num + 1 WHERE user_id = #{userId} AND item_id = #{itemId}")
-    void updateNum(@Param("itemId") Long itemId, @Param("userId") Long userId);
+    /**
+     * 商品已在购物车中则累加数量，否则在购物车条目数小于maxItems时新增，依赖cart表(user_id, item_id)上的唯一索引
+     *
+     * @return 1-新增，2-累加数量，0-购物车已满，没有做任何修改
+     */
+    @Insert("INSERT INTO cart (user_id, item_id, num, name, spec, price, image, create_time, update_time) " +
+            "SELECT #{cart.userId}, #{cart.itemId}, #{cart.num}, #{cart.name}, #{cart.spec}, #{cart.price}, #{cart.image}, NOW(), NOW() FROM DUAL " +
+            "WHERE EXISTS (SELECT 1 FROM cart WHERE user_id = #{cart.userId} AND item_id = #{cart.itemId}) " +
+            "OR (SELECT COUNT(*) FROM cart WHERE user_id = #{cart.userId}) < #{maxItems} " +
+            "ON DUPLICATE KEY UPDATE num = num + VALUES(num), update_time = NOW()")
+    int addOrIncrement(@Param("cart") Cart cart, @Param("maxItems") int maxItems);
+
+    /**
+     * 使用指定的id新增，存储模式下购物车条目的id在写回数据库之前就已经生成
+     */
+    @Insert("INSERT INTO cart (id, user_id, item_id, num, name, spec, price, image, create_time, update_time) " +
+            "VALUES (#{id}, #{userId}, #{itemId}, #{num}, #{name}, #{spec}, #{price}, #{image}, #{createTime}, #{updateTime})")
+    void insertWithId(Cart cart);
+
+    /**
+     * 按(user_id, item_id)批量删除，多个用户的条目在一条语句中完成
+     */
+    @Delete("<script>DELETE FROM cart WHERE (user_id, item_id) IN " +
+            "<foreach collection='carts' item='c' open='(' separator=',' close=')'>(#{c.userId}, #{c.itemId})</foreach>" +
+            "</script>")
+    int deleteByUserItems(@Param("carts") List<Cart> carts);
+
+    /**
+     * 批量新增或修改，依赖cart表(user_id, item_id)上的唯一索引
+     *
+     * @param increment true-已存在时累加数量，false-已存在时覆盖数量
+     */
+    @Insert("<script>INSERT INTO cart (user_id, item_id, num, name, spec, price, image, create_time, update_time) VALUES " +
+            "<foreach collection='carts' item='c' separator=','>" +
+            "(#{c.userId}, #{c.itemId}, #{c.num}, #{c.name}, #{c.spec}, #{c.price}, #{c.image}, NOW(), NOW())" +
+            "</foreach> ON DUPLICATE KEY UPDATE num = " +
+            "<choose><when test='increment'>num + VALUES(num)</when><otherwise>VALUES(num)</otherwise></choose>, " +
+            "update_time = NOW()</script>")
+    void upsertBatch(@Param("carts") List<Cart> carts, @Param("increment") boolean increment);
+
+    /**
+     * 锁定用户的购物车并返回其中的商品id，同一用户的批量修改串行执行
+     */
+    @Select("SELECT item_id FROM cart WHERE user_id = #{userId} FOR UPDATE")
+    List<Long> lockItemIds(@Param("userId") Long userId);
 }
@@ -2,12 +2,14 @@ package com.hmall.cart.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmall.cart.domain.dto.CartFormDTO;
+import com.hmall.cart.domain.dto.CartOpDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
 
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -24,4 +26,25 @@ public interface ICartService extends IService<Cart> {
     List<CartVO> queryMyCarts();
 
     void removeByItemIds(Collection<Long> itemIds);
+
+    /**
+     * 批量删除多个用户购物车中的商品，不依赖当前登录用户
+     *
+     * @param itemIdsByUser 用户id到商品id集合的映射
+     */
+    void removeByUserItems(Map<Long, ? extends Collection<Long>> itemIdsByUser);
+
+    void updateCart(Cart cart);
+
+    /**
+     * 按顺序对当前用户的购物车执行一批操作，返回修改后的购物车
+     */
+    List<CartVO> batchUpdateCarts(List<CartOpDTO> ops);
+
+    void removeCartItem(Long id);
+
+    /**
+     * 把存储中用户的完整购物车写回数据库
+     */
+    void syncUserCarts(Long userId, List<Cart> carts);
 }
@@ -2,27 +2,40 @@ package com.hmall.cart.service.impl;
 
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmall.api.clients.ItemClient;
 import com.hmall.api.domain.dto.ItemDTO;
 import com.hmall.cart.config.CartProperties;
 import com.hmall.cart.domain.dto.CartFormDTO;
+import com.hmall.cart.domain.dto.CartOpDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
+import com.hmall.cart.enums.CartOpType;
 import com.hmall.cart.mapper.CartMapper;
 import com.hmall.cart.service.ICartService;
+import com.hmall.cart.snapshot.ItemSnapshot;
+import com.hmall.cart.snapshot.ItemSnapshotStore;
+import com.hmall.cart.store.CartStore;
+import com.hmall.common.exception.BadRequestException;
 import com.hmall.common.exception.BizIllegalException;
 import com.hmall.common.utils.BeanUtils;
 import com.hmall.common.utils.CollUtils;
 import com.hmall.common.utils.UserContext;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -40,37 +53,57 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements ICartService {
 
+    private static final String CART_FULL_MESSAGE = "用户购物车课程不能超过{}";
+
+    private final ItemSnapshotStore itemSnapshotStore;
     private final ItemClient itemClient;
     private final CartProperties cartProperties;
-
+    private final ObjectProvider<CartStore> cartStoreProvider;
 
     @Override
     public void addItem2Cart(CartFormDTO cartFormDTO) {
         // 1.获取登录用户
         Long userId = UserContext.getUser();
 
-        // 2.判断是否已经存在
-        if (checkItemExists(cartFormDTO.getItemId(), userId)) {
-            // 2.1.存在，则更新数量
-            baseMapper.updateNum(cartFormDTO.getItemId(), userId);
+        CartStore cartStore = cartStoreProvider.getIfAvailable();
+        if (cartStore != null) {
+            // 存储模式下判断、累加、新增由存储原子完成，数据库由CartFlushTask异步写回
+            addItem2Store(cartStore, cartFormDTO, userId);
             return;
         }
-        // 2.2.不存在，判断是否超过购物车数量
-        checkCartsFull(userId);
 
-        // 3.新增购物车条目
-        // 3.1.转换PO
+        // 2.转换PO
         Cart cart = BeanUtils.copyBean(cartFormDTO, Cart.class);
-        // 3.2.保存当前用户
-        cart.setUserId(userId);
-        // 3.3.保存到数据库
-        save(cart);
+        cart.setUserId(userId).setNum(addNum(cartFormDTO));
+
+        // 3.已存在则累加数量，不存在且未超过购物车数量则新增，由一条语句原子完成
+        if (baseMapper.addOrIncrement(cart, cartProperties.getMaxItems()) == 0) {
+            throw cartFull();
+        }
+    }
+
+    private void addItem2Store(CartStore cartStore, CartFormDTO cartFormDTO, Long userId) {
+        Cart cart = BeanUtils.copyBean(cartFormDTO, Cart.class);
+        LocalDateTime now = LocalDateTime.now();
+        // 条目先存在于存储中，写回数据库之前就需要id用于修改和删除
+        cart.setId(IdWorker.getId())
+                .setUserId(userId)
+                .setNum(addNum(cartFormDTO))
+                .setCreateTime(now)
+                .setUpdateTime(now);
+        if (cartStore.add(userId, cart, cartProperties.getMaxItems()) == CartStore.AddResult.FULL) {
+            throw cartFull();
+        }
     }
 
     @Override
     public List<CartVO> queryMyCarts() {
         // 1.查询我的购物车列表
-        List<Cart> carts = lambdaQuery().eq(Cart::getUserId, UserContext.getUser()).list();
+        Long userId = UserContext.getUser();
+        CartStore cartStore = cartStoreProvider.getIfAvailable();
+        List<Cart> carts = cartStore != null
+                ? cartStore.list(userId)
+                : lambdaQuery().eq(Cart::getUserId, userId).list();
         if (CollUtils.isEmpty(carts)) {
             return CollUtils.emptyList();
         }
@@ -90,15 +123,14 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
         Set<Long> itemIds = vos.stream().map(CartVO::getItemId).collect(Collectors.toSet());
 
 
-        List<ItemDTO> items = itemClient.queryItemByIds(itemIds);
-        if (CollUtils.isEmpty(items)) {
+        // 2.查询本地的商品快照，快照中没有的商品才会远程查询
+        Map<Long, ItemSnapshot> itemMap = itemSnapshotStore.get(itemIds);
+        if (CollUtils.isEmpty(itemMap)) {
             return;
         }
-        // 3.转为 id 到 item的map
-        Map<Long, ItemDTO> itemMap = items.stream().collect(Collectors.toMap(ItemDTO::getId, Function.identity()));
-        // 4.写入vo
+        // 3.写入vo
         for (CartVO v : vos) {
-            ItemDTO item = itemMap.get(v.getItemId());
+            ItemSnapshot item = itemMap.get(v.getItemId());
             if (item == null) {
                 continue;
             }
@@ -111,6 +143,11 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
     @Override
     @Transactional
     public void removeByItemIds(Collection<Long> itemIds) {
+        CartStore cartStore = cartStoreProvider.getIfAvailable();
+        if (cartStore != null) {
+            cartStore.removeByItemIds(UserContext.getUser(), itemIds);
+            return;
+        }
         // 1.构建删除条件，userId和itemId
         QueryWrapper<Cart> queryWrapper = new QueryWrapper<>();
         queryWrapper.lambda()
@@ -120,18 +157,211 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
         remove(queryWrapper);
     }
 
-    private void checkCartsFull(Long userId) {
-        Long count = lambdaQuery().eq(Cart::getUserId, userId).count();
-        if (count >= cartProperties.getMaxItems()) {
-            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", cartProperties.getMaxItems()));
+    @Override
+    @Transactional
+    public void removeByUserItems(Map<Long, ? extends Collection<Long>> itemIdsByUser) {
+        CartStore cartStore = cartStoreProvider.getIfAvailable();
+        if (cartStore != null) {
+            itemIdsByUser.forEach(cartStore::removeByItemIds);
+            return;
+        }
+        List<Cart> carts = new ArrayList<>();
+        itemIdsByUser.forEach((userId, itemIds) ->
+                itemIds.forEach(itemId -> carts.add(new Cart().setUserId(userId).setItemId(itemId))));
+        if (!carts.isEmpty()) {
+            baseMapper.deleteByUserItems(carts);
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<CartVO> batchUpdateCarts(List<CartOpDTO> ops) {
+        Long userId = UserContext.getUser();
+        // 1.按商品合并操作，同一商品只保留最终效果
+        Collection<CartOpDTO> merged = mergeOps(ops);
+        // 2.执行
+        CartStore cartStore = cartStoreProvider.getIfAvailable();
+        if (cartStore != null) {
+            applyToStore(cartStore, userId, merged);
+        } else {
+            applyToDb(userId, merged);
+        }
+        // 3.返回修改后的购物车
+        return queryMyCarts();
+    }
+
+    private static Collection<CartOpDTO> mergeOps(List<CartOpDTO> ops) {
+        Map<Long, CartOpDTO> merged = new LinkedHashMap<>(ops.size());
+        for (CartOpDTO op : ops) {
+            if (op.getOp() == CartOpType.SET && op.getNum() == null) {
+                throw new BadRequestException("修改数量时购买数量不能为空");
+            }
+            CartOpDTO next = BeanUtils.copyBean(op, CartOpDTO.class);
+            CartOpDTO prev = merged.get(op.getItemId());
+            if (next.getOp() == CartOpType.ADD) {
+                int num = next.getNum() == null ? 1 : next.getNum();
+                if (prev == null) {
+                    next.setNum(num);
+                } else if (prev.getOp() == CartOpType.REMOVE) {
+                    // 先删除再加入，等价于把数量设置为num
+                    next.setOp(CartOpType.SET).setNum(num);
+                } else {
+                    // 在之前的加入或修改基础上累加
+                    next.setOp(prev.getOp()).setNum(prev.getNum() + num);
+                }
+            }
+            if (prev != null && next.getName() == null) {
+                next.setName(prev.getName()).setSpec(prev.getSpec()).setPrice(prev.getPrice()).setImage(prev.getImage());
+            }
+            merged.put(op.getItemId(), next);
+        }
+        return merged.values();
+    }
+
+    private void applyToDb(Long userId, Collection<CartOpDTO> ops) {
+        // 1.锁定用户的购物车，校验修改后的条目数
+        Set<Long> itemIds = new HashSet<>(baseMapper.lockItemIds(userId));
+        int before = itemIds.size();
+        fillItemInfo(ops, itemIds);
+        List<Cart> removes = new ArrayList<>();
+        List<Cart> adds = new ArrayList<>();
+        List<Cart> sets = new ArrayList<>();
+        for (CartOpDTO op : ops) {
+            Cart cart = BeanUtils.copyBean(op, Cart.class).setUserId(userId);
+            if (op.getOp() == CartOpType.REMOVE) {
+                itemIds.remove(op.getItemId());
+                removes.add(cart);
+                continue;
+            }
+            itemIds.add(op.getItemId());
+            (op.getOp() == CartOpType.ADD ? adds : sets).add(cart);
+        }
+        if (itemIds.size() > before && itemIds.size() > cartProperties.getMaxItems()) {
+            throw cartFull();
+        }
+        // 2.每种操作一条语句
+        if (!removes.isEmpty()) {
+            baseMapper.deleteByUserItems(removes);
+        }
+        if (!adds.isEmpty()) {
+            baseMapper.upsertBatch(adds, true);
+        }
+        if (!sets.isEmpty()) {
+            baseMapper.upsertBatch(sets, false);
+        }
+    }
+
+    private void applyToStore(CartStore cartStore, Long userId, Collection<CartOpDTO> ops) {
+        Set<Long> itemIds = cartStore.list(userId).stream().map(Cart::getItemId).collect(Collectors.toSet());
+        fillItemInfo(ops, itemIds);
+        // 删除、累加、设置数量由存储在一次操作中完成，超过购物车数量时不做任何修改
+        List<Long> removes = new ArrayList<>();
+        List<Cart> adds = new ArrayList<>();
+        List<Cart> sets = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (CartOpDTO op : ops) {
+            if (op.getOp() == CartOpType.REMOVE) {
+                removes.add(op.getItemId());
+                continue;
+            }
+            // 商品已在购物车中时存储只修改数量，id和商品信息保持不变
+            Cart cart = BeanUtils.copyBean(op, Cart.class)
+                    .setId(IdWorker.getId())
+                    .setUserId(userId)
+                    .setCreateTime(now)
+                    .setUpdateTime(now);
+            (op.getOp() == CartOpType.ADD ? adds : sets).add(cart);
+        }
+        if (!cartStore.batchUpdate(userId, removes, adds, sets, cartProperties.getMaxItems())) {
+            throw cartFull();
+        }
+    }
+
+    /**
+     * 新加入购物车的商品没有携带商品信息时，从商品服务查询名称、规格、价格和图片，商品不存在时拒绝
+     */
+    private void fillItemInfo(Collection<CartOpDTO> ops, Set<Long> existing) {
+        List<CartOpDTO> missing = new ArrayList<>();
+        for (CartOpDTO op : ops) {
+            if (op.getOp() != CartOpType.REMOVE && op.getName() == null && !existing.contains(op.getItemId())) {
+                missing.add(op);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<Long> itemIds = missing.stream().map(CartOpDTO::getItemId).collect(Collectors.toList());
+        Map<Long, ItemDTO> itemMap = itemClient.queryItemByIds(itemIds).stream()
+                .collect(Collectors.toMap(ItemDTO::getId, Function.identity(), (a, b) -> a));
+        for (CartOpDTO op : missing) {
+            ItemDTO item = itemMap.get(op.getItemId());
+            if (item == null) {
+                throw new BadRequestException("商品不存在");
+            }
+            op.setName(item.getName()).setSpec(item.getSpec()).setPrice(item.getPrice()).setImage(item.getImage());
+        }
+    }
+
+    private BizIllegalException cartFull() {
+        return new BizIllegalException(StrUtil.format(CART_FULL_MESSAGE, cartProperties.getMaxItems()));
+    }
+
+    @Override
+    public void updateCart(Cart cart) {
+        CartStore cartStore = cartStoreProvider.getIfAvailable();
+        if (cartStore == null) {
+            updateById(cart);
+            return;
+        }
+        // 存储模式下只能修改数量
+        if (cart.getNum() != null) {
+            cartStore.updateNum(UserContext.getUser(), cart.getId(), cart.getNum());
+        }
+    }
+
+    @Override
+    public void removeCartItem(Long id) {
+        CartStore cartStore = cartStoreProvider.getIfAvailable();
+        if (cartStore == null) {
+            removeById(id);
+            return;
+        }
+        cartStore.removeById(UserContext.getUser(), id);
+    }
+
+    @Override
+    @Transactional
+    public void syncUserCarts(Long userId, List<Cart> carts) {
+        // 1.查询数据库中的购物车，以商品id对比差异
+        Map<Long, Cart> stored = lambdaQuery().eq(Cart::getUserId, userId).list()
+                .stream().collect(Collectors.toMap(Cart::getItemId, Function.identity(), (a, b) -> a));
+        Set<Long> itemIds = carts.stream().map(Cart::getItemId).collect(Collectors.toSet());
+        // 2.删除存储中已经没有的条目
+        List<Long> removed = new ArrayList<>();
+        stored.forEach((itemId, cart) -> {
+            if (!itemIds.contains(itemId)) {
+                removed.add(cart.getId());
+            }
+        });
+        if (!removed.isEmpty()) {
+            removeByIds(removed);
+        }
+        // 3.新增或更新数量
+        for (Cart cart : carts) {
+            Cart old = stored.get(cart.getItemId());
+            if (old == null) {
+                baseMapper.insertWithId(cart);
+            } else if (!Objects.equals(old.getNum(), cart.getNum())) {
+                lambdaUpdate()
+                        .set(Cart::getNum, cart.getNum())
+                        .set(Cart::getUpdateTime, LocalDateTime.now())
+                        .eq(Cart::getId, old.getId())
+                        .update();
+            }
         }
     }
 
-    private boolean checkItemExists(Long itemId, Long userId) {
-        Long count = lambdaQuery()
-                .eq(Cart::getUserId, userId)
-                .eq(Cart::getItemId, itemId)
-                .count();
-        return count > 0;
+    private static int addNum(CartFormDTO cartFormDTO) {
+        return cartFormDTO.getNum() == null ? 1 : cartFormDTO.getNum();
     }
 }
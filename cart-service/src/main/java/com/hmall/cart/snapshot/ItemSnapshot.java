@@ -0,0 +1,22 @@
+package com.hmall.cart.snapshot;
+
+import com.hmall.api.domain.dto.ItemDTO;
+import lombok.Data;
+
+/**
+ * 购物车展示需要的商品信息
+ */
+@Data
+public class ItemSnapshot {
+    private Integer price;
+    private Integer status;
+    private Integer stock;
+
+    public static ItemSnapshot of(ItemDTO item) {
+        ItemSnapshot snapshot = new ItemSnapshot();
+        snapshot.setPrice(item.getPrice());
+        snapshot.setStatus(item.getStatus());
+        snapshot.setStock(item.getStock());
+        return snapshot;
+    }
+}
@@ -0,0 +1,139 @@
+package com.hmall.cart.snapshot;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.clients.ItemClient;
+import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.cart.config.CartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 购物车中商品的本地快照。
+ * <p>
+ * 查询购物车时直接读取快照，只有快照中没有的商品才调用item-service；
+ * 商品变更时由 {@link com.hmall.cart.listener.ItemSnapshotListener} 登记，按hm.cart.snapshot-refresh-window合并后
+ * 在后台一次刷新窗口内变更的已有快照，热门商品每次下单都会产生变更，不会每次都查询item-service。
+ * 每次变更都会记录时间，加载开始之后又发生变更的商品不写入快照（并移除已有的快照），
+ * 避免先开始、后返回的加载用旧数据覆盖变更之后刷新的快照。
+ */
+@Slf4j
+@Component
+public class ItemSnapshotStore {
+
+    /**
+     * 变更时间的保留时长，需要大于一次加载的最长耗时
+     */
+    private static final Duration CHANGE_RETENTION = Duration.ofMinutes(1);
+
+    private final ItemClient itemClient;
+    private final Cache<Long, ItemSnapshot> snapshots;
+    /**
+     * 商品id到最近一次变更的时间（System.nanoTime）
+     */
+    private final Cache<Long, Long> changedAt;
+    /**
+     * 等待刷新的商品
+     */
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    public ItemSnapshotStore(ItemClient itemClient, CartProperties cartProperties) {
+        this.itemClient = itemClient;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(cartProperties.getSnapshotMaxSize())
+                .expireAfterWrite(cartProperties.getSnapshotExpire())
+                .build();
+        this.changedAt = Caffeine.newBuilder()
+                .maximumSize(cartProperties.getSnapshotMaxSize())
+                .expireAfterWrite(CHANGE_RETENTION)
+                .build();
+    }
+
+    /**
+     * 查询商品快照，不存在的商品不包含在结果中
+     */
+    public Map<Long, ItemSnapshot> get(Collection<Long> itemIds) {
+        Map<Long, ItemSnapshot> result = new HashMap<>(snapshots.getAllPresent(itemIds));
+        if (result.size() == itemIds.size()) {
+            return result;
+        }
+        List<Long> missing = new ArrayList<>(itemIds.size() - result.size());
+        for (Long itemId : itemIds) {
+            if (!result.containsKey(itemId)) {
+                missing.add(itemId);
+            }
+        }
+        long loadStart = System.nanoTime();
+        for (ItemDTO item : itemClient.queryItemByIds(missing)) {
+            ItemSnapshot snapshot = ItemSnapshot.of(item);
+            putIfUnchanged(item.getId(), snapshot, loadStart);
+            result.put(item.getId(), snapshot);
+        }
+        return result;
+    }
+
+    /**
+     * 登记商品变更，只有已经在快照中的商品会在下个窗口刷新
+     */
+    public void refresh(Collection<Long> itemIds) {
+        // 先记录变更，正在进行的加载返回后不会写入快照
+        long now = System.nanoTime();
+        itemIds.forEach(itemId -> changedAt.put(itemId, now));
+        pending.addAll(snapshots.getAllPresent(itemIds).keySet());
+    }
+
+    /**
+     * 一次刷新当前窗口内变更的商品快照
+     */
+    @Scheduled(fixedDelayString = "${hm.cart.snapshot-refresh-window:500}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // 1.取出当前窗口内的商品，之后到达的变更进入下个窗口
+        Set<Long> tracked = new HashSet<>(pending.size());
+        for (Iterator<Long> it = pending.iterator(); it.hasNext(); ) {
+            tracked.add(it.next());
+            it.remove();
+        }
+        // 2.期间已经过期或被移除的商品不需要刷新
+        tracked.retainAll(snapshots.getAllPresent(tracked).keySet());
+        if (tracked.isEmpty()) {
+            return;
+        }
+        long loadStart = System.nanoTime();
+        try {
+            for (ItemDTO item : itemClient.queryItemByIds(tracked)) {
+                putIfUnchanged(item.getId(), ItemSnapshot.of(item), loadStart);
+                tracked.remove(item.getId());
+            }
+        } catch (Exception e) {
+            log.error("刷新商品快照失败，移除快照，商品数量：{}", tracked.size(), e);
+        }
+        // 剩下的是已删除或者查询失败的商品，移除后下次查询购物车时重新加载
+        snapshots.invalidateAll(tracked);
+        log.debug("刷新商品快照，移除商品：{}", tracked);
+    }
+
+    /**
+     * 加载开始之后商品没有再变更时写入快照，否则移除快照，由之后的查询或刷新重新加载
+     */
+    private void putIfUnchanged(Long itemId, ItemSnapshot snapshot, long loadStart) {
+        snapshots.asMap().compute(itemId, (id, old) -> {
+            Long changed = changedAt.getIfPresent(id);
+            return changed != null && changed - loadStart > 0 ? null : snapshot;
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.service.ICartService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 定时把有变更的购物车整体写回cart表
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CartFlushTask {
+
+    private final ObjectProvider<CartStore> cartStoreProvider;
+    private final ICartService cartService;
+    private final CartProperties cartProperties;
+
+    @Scheduled(fixedDelayString = "${hm.cart.flush-interval:1000}")
+    public void flushCarts() {
+        CartStore cartStore = cartStoreProvider.getIfAvailable();
+        if (cartStore == null) {
+            return;
+        }
+        List<Long> userIds = cartStore.drainDirty(cartProperties.getFlushBatchSize());
+        if (userIds.isEmpty()) {
+            return;
+        }
+        int failed = 0;
+        for (Long userId : userIds) {
+            try {
+                // 写回的是当前的完整购物车，期间又有变更也只会在下一轮多写一次
+                cartService.syncUserCarts(userId, cartStore.list(userId));
+            } catch (Exception e) {
+                // 重新标记，下一轮重试
+                cartStore.markDirty(userId);
+                failed++;
+                log.error("购物车写回数据库失败，用户：{}", userId, e);
+            }
+        }
+        log.debug("购物车写回数据库完成，用户数量：{}，失败：{}", userIds.size(), failed);
+    }
+}
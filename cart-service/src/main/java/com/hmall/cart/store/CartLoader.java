@@ -0,0 +1,13 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.domain.po.Cart;
+
+import java.util.List;
+
+/**
+ * 存储中没有用户的购物车时，从数据库加载
+ */
+@FunctionalInterface
+public interface CartLoader {
+    List<Cart> load(Long userId);
+}
@@ -0,0 +1,80 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.domain.po.Cart;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 购物车存储，每个用户一个以商品id为key的哈希。
+ * <p>
+ * 读写都只访问存储，用户第一次访问时从数据库加载；有变更的用户记录为脏用户，
+ * 由 {@link CartFlushTask} 定时把整个购物车写回cart表。
+ */
+public interface CartStore {
+
+    enum AddResult {
+        /**
+         * 商品已在购物车中，数量已累加
+         */
+        INCREMENTED,
+        /**
+         * 新增了购物车条目
+         */
+        ADDED,
+        /**
+         * 购物车已满，没有做任何修改
+         */
+        FULL
+    }
+
+    /**
+     * 原子地把商品加入购物车：已存在则累加数量，否则在条目数小于maxItems时新增
+     *
+     * @param cart 新增时使用的购物车条目，num为要增加的数量
+     */
+    AddResult add(Long userId, Cart cart, int maxItems);
+
+    /**
+     * 原子地批量修改购物车：先校验修改后的条目数，超过maxItems时不做任何修改，否则删除、累加、设置数量一起生效。
+     * 同一商品只能出现在一个集合中
+     *
+     * @param removes 要删除的商品id
+     * @param adds    要累加数量的条目，不存在时新增
+     * @param sets    要设置数量的条目，不存在时新增
+     * @return 购物车条目数超过上限时返回false
+     */
+    boolean batchUpdate(Long userId, Collection<Long> removes, List<Cart> adds, List<Cart> sets, int maxItems);
+
+    /**
+     * 查询用户的购物车
+     */
+    List<Cart> list(Long userId);
+
+    /**
+     * 根据购物车条目id修改数量
+     *
+     * @return 条目不存在时返回false
+     */
+    boolean updateNum(Long userId, Long cartId, Integer num);
+
+    /**
+     * 根据商品id删除购物车条目
+     */
+    void removeByItemIds(Long userId, Collection<Long> itemIds);
+
+    /**
+     * 根据购物车条目id删除
+     */
+    void removeById(Long userId, Long cartId);
+
+    /**
+     * 取出最多count个有未持久化变更的用户
+     */
+    List<Long> drainDirty(int count);
+
+    /**
+     * 持久化失败时重新标记为脏用户
+     */
+    void markDirty(Long userId);
+}
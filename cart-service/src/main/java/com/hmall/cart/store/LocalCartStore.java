@@ -0,0 +1,160 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.domain.po.Cart;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于本地内存的购物车存储，语义与 {@link RedisCartStore} 一致，用于离线测试和单实例部署
+ */
+@Component
+@ConditionalOnProperty(prefix = "hm.cart", name = "store", havingValue = "local")
+public class LocalCartStore implements CartStore {
+
+    private final CartLoader cartLoader;
+    private final Map<Long, Map<Long, Cart>> carts = new HashMap<>();
+    private final Set<Long> dirty = new LinkedHashSet<>();
+
+    public LocalCartStore(CartLoader cartLoader) {
+        this.cartLoader = cartLoader;
+    }
+
+    @Override
+    public synchronized AddResult add(Long userId, Cart cart, int maxItems) {
+        Map<Long, Cart> userCarts = load(userId);
+        Cart exists = userCarts.get(cart.getItemId());
+        if (exists != null) {
+            exists.setNum(exists.getNum() + cart.getNum());
+            dirty.add(userId);
+            return AddResult.INCREMENTED;
+        }
+        if (userCarts.size() >= maxItems) {
+            return AddResult.FULL;
+        }
+        userCarts.put(cart.getItemId(), copy(cart));
+        dirty.add(userId);
+        return AddResult.ADDED;
+    }
+
+    @Override
+    public synchronized boolean batchUpdate(Long userId, Collection<Long> removes, List<Cart> adds, List<Cart> sets,
+                                            int maxItems) {
+        Map<Long, Cart> userCarts = load(userId);
+        int before = userCarts.size();
+        int count = before;
+        for (Long itemId : removes) {
+            if (userCarts.containsKey(itemId)) {
+                count--;
+            }
+        }
+        for (List<Cart> carts : List.of(adds, sets)) {
+            for (Cart cart : carts) {
+                if (!userCarts.containsKey(cart.getItemId())) {
+                    count++;
+                }
+            }
+        }
+        if (count > before && count > maxItems) {
+            return false;
+        }
+        userCarts.keySet().removeAll(removes);
+        for (Cart cart : adds) {
+            Cart exists = userCarts.get(cart.getItemId());
+            if (exists != null) {
+                exists.setNum(exists.getNum() + cart.getNum());
+            } else {
+                userCarts.put(cart.getItemId(), copy(cart));
+            }
+        }
+        for (Cart cart : sets) {
+            Cart exists = userCarts.get(cart.getItemId());
+            if (exists != null) {
+                exists.setNum(cart.getNum());
+            } else {
+                userCarts.put(cart.getItemId(), copy(cart));
+            }
+        }
+        dirty.add(userId);
+        return true;
+    }
+
+    @Override
+    public synchronized List<Cart> list(Long userId) {
+        List<Cart> result = new ArrayList<>();
+        load(userId).values().forEach(cart -> result.add(copy(cart)));
+        return result;
+    }
+
+    @Override
+    public synchronized boolean updateNum(Long userId, Long cartId, Integer num) {
+        for (Cart cart : load(userId).values()) {
+            if (cart.getId().equals(cartId)) {
+                cart.setNum(num);
+                dirty.add(userId);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void removeByItemIds(Long userId, Collection<Long> itemIds) {
+        load(userId).keySet().removeAll(itemIds);
+        dirty.add(userId);
+    }
+
+    @Override
+    public synchronized void removeById(Long userId, Long cartId) {
+        load(userId).values().removeIf(cart -> cart.getId().equals(cartId));
+        dirty.add(userId);
+    }
+
+    @Override
+    public synchronized List<Long> drainDirty(int count) {
+        List<Long> userIds = new ArrayList<>(Math.min(count, dirty.size()));
+        Iterator<Long> it = dirty.iterator();
+        while (it.hasNext() && userIds.size() < count) {
+            userIds.add(it.next());
+            it.remove();
+        }
+        return userIds;
+    }
+
+    @Override
+    public synchronized void markDirty(Long userId) {
+        dirty.add(userId);
+    }
+
+    private Map<Long, Cart> load(Long userId) {
+        return carts.computeIfAbsent(userId, id -> {
+            Map<Long, Cart> userCarts = new LinkedHashMap<>();
+            cartLoader.load(id).forEach(cart -> userCarts.put(cart.getItemId(), copy(cart)));
+            return userCarts;
+        });
+    }
+
+    // 返回副本，避免调用方修改存储中的数据
+    private static Cart copy(Cart cart) {
+        return new Cart()
+                .setId(cart.getId())
+                .setUserId(cart.getUserId())
+                .setItemId(cart.getItemId())
+                .setNum(cart.getNum())
+                .setName(cart.getName())
+                .setSpec(cart.getSpec())
+                .setPrice(cart.getPrice())
+                .setImage(cart.getImage())
+                .setCreateTime(cart.getCreateTime())
+                .setUpdateTime(cart.getUpdateTime());
+    }
+}
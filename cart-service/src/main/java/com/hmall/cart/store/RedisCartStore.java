@@ -0,0 +1,313 @@
+package com.hmall.cart.store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.common.exception.BizIllegalException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于Redis哈希的购物车存储。
+ * <p>
+ * 每个用户两个哈希：items中是商品id到购物车条目JSON的映射，nums中是商品id到数量的映射，
+ * 数量单独存放才能用hincrby原子累加；nums中的"0"字段是已从数据库加载的标记。
+ * 所有操作都通过Lua脚本执行，用户的购物车不存在时脚本返回-1，加载后重试。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "hm.cart", name = "store", havingValue = "redis")
+public class RedisCartStore implements CartStore {
+
+    private static final Long NOT_LOADED = -1L;
+
+    /**
+     * KEYS[1]: items，KEYS[2]: nums；ARGV[1]: 过期秒数，ARGV[2..]: 商品id、条目JSON、数量三个一组
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = RedisScript.of(
+            "if redis.call('exists', KEYS[2]) == 1 then return 0 end\n" +
+            "redis.call('hset', KEYS[2], '0', '0')\n" +
+            "for i = 2, #ARGV, 3 do\n" +
+            "    redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "    redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 2])\n" +
+            "end\n" +
+            "redis.call('expire', KEYS[1], ARGV[1])\n" +
+            "redis.call('expire', KEYS[2], ARGV[1])\n" +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1]: items，KEYS[2]: nums；ARGV[1]: 过期秒数，ARGV[2]: 商品id，ARGV[3]: 条目JSON，ARGV[4]: 数量，ARGV[5]: 最大条目数
+     */
+    private static final RedisScript<Long> ADD_SCRIPT = RedisScript.of(
+            "if redis.call('exists', KEYS[2]) == 0 then return -1 end\n" +
+            "local r\n" +
+            "if redis.call('hexists', KEYS[1], ARGV[2]) == 1 then\n" +
+            "    redis.call('hincrby', KEYS[2], ARGV[2], ARGV[4])\n" +
+            "    r = 1\n" +
+            "elseif redis.call('hlen', KEYS[2]) - 1 >= tonumber(ARGV[5]) then\n" +
+            "    return 0\n" +
+            "else\n" +
+            "    redis.call('hset', KEYS[1], ARGV[2], ARGV[3])\n" +
+            "    redis.call('hset', KEYS[2], ARGV[2], ARGV[4])\n" +
+            "    r = 2\n" +
+            "end\n" +
+            "redis.call('expire', KEYS[1], ARGV[1])\n" +
+            "redis.call('expire', KEYS[2], ARGV[1])\n" +
+            "return r", Long.class);
+
+    /**
+     * KEYS[1]: items，KEYS[2]: nums；ARGV[1]: 过期秒数，ARGV[2]: 最大条目数，ARGV[3]: 删除的数量r，
+     * ARGV[4..r+3]: 删除的商品id，之后为商品id、条目JSON、数量、方式（a-累加，s-设置）四个一组。
+     * 先计算修改后的条目数，超过上限且比修改前多时返回0，不做任何修改
+     */
+    private static final RedisScript<Long> BATCH_SCRIPT = RedisScript.of(
+            "if redis.call('exists', KEYS[2]) == 0 then return -1 end\n" +
+            "local r = tonumber(ARGV[3])\n" +
+            "local before = redis.call('hlen', KEYS[2]) - 1\n" +
+            "local count = before\n" +
+            "for i = 4, r + 3 do\n" +
+            "    if redis.call('hexists', KEYS[1], ARGV[i]) == 1 then count = count - 1 end\n" +
+            "end\n" +
+            "for i = r + 4, #ARGV, 4 do\n" +
+            "    if redis.call('hexists', KEYS[1], ARGV[i]) == 0 then count = count + 1 end\n" +
+            "end\n" +
+            "if count > before and count > tonumber(ARGV[2]) then return 0 end\n" +
+            "for i = 4, r + 3 do\n" +
+            "    redis.call('hdel', KEYS[1], ARGV[i])\n" +
+            "    redis.call('hdel', KEYS[2], ARGV[i])\n" +
+            "end\n" +
+            "for i = r + 4, #ARGV, 4 do\n" +
+            "    if redis.call('hexists', KEYS[1], ARGV[i]) == 0 then\n" +
+            "        redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "        redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 2])\n" +
+            "    elseif ARGV[i + 3] == 'a' then\n" +
+            "        redis.call('hincrby', KEYS[2], ARGV[i], ARGV[i + 2])\n" +
+            "    else\n" +
+            "        redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 2])\n" +
+            "    end\n" +
+            "end\n" +
+            "redis.call('expire', KEYS[1], ARGV[1])\n" +
+            "redis.call('expire', KEYS[2], ARGV[1])\n" +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1]: items，KEYS[2]: nums；ARGV[1]: 过期秒数，ARGV[2]: 商品id，ARGV[3]: 数量
+     */
+    private static final RedisScript<Long> UPDATE_NUM_SCRIPT = RedisScript.of(
+            "if redis.call('exists', KEYS[2]) == 0 then return -1 end\n" +
+            "if redis.call('hexists', KEYS[1], ARGV[2]) == 0 then return 0 end\n" +
+            "redis.call('hset', KEYS[2], ARGV[2], ARGV[3])\n" +
+            "redis.call('expire', KEYS[1], ARGV[1])\n" +
+            "redis.call('expire', KEYS[2], ARGV[1])\n" +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1]: items，KEYS[2]: nums；ARGV[1]: 过期秒数，ARGV[2..]: 商品id
+     */
+    private static final RedisScript<Long> REMOVE_SCRIPT = RedisScript.of(
+            "if redis.call('exists', KEYS[2]) == 0 then return -1 end\n" +
+            "for i = 2, #ARGV do\n" +
+            "    redis.call('hdel', KEYS[1], ARGV[i])\n" +
+            "    redis.call('hdel', KEYS[2], ARGV[i])\n" +
+            "end\n" +
+            "redis.call('expire', KEYS[1], ARGV[1])\n" +
+            "redis.call('expire', KEYS[2], ARGV[1])\n" +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1]: items，KEYS[2]: nums
+     */
+    private static final RedisScript<List> LIST_SCRIPT = RedisScript.of(
+            "if redis.call('exists', KEYS[2]) == 0 then return {'missing'} end\n" +
+            "return {redis.call('hgetall', KEYS[1]), redis.call('hgetall', KEYS[2])}", List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final CartLoader cartLoader;
+    private final CartProperties cartProperties;
+
+    @Override
+    public AddResult add(Long userId, Cart cart, int maxItems) {
+        Long r = execute(userId, ADD_SCRIPT,
+                cart.getItemId().toString(), toJson(cart), cart.getNum().toString(), String.valueOf(maxItems));
+        markDirty(userId, r);
+        return r == 0 ? AddResult.FULL : r == 1 ? AddResult.INCREMENTED : AddResult.ADDED;
+    }
+
+    @Override
+    public boolean batchUpdate(Long userId, Collection<Long> removes, List<Cart> adds, List<Cart> sets, int maxItems) {
+        List<String> args = new ArrayList<>(2 + removes.size() + (adds.size() + sets.size()) * 4);
+        args.add(String.valueOf(maxItems));
+        args.add(String.valueOf(removes.size()));
+        removes.forEach(itemId -> args.add(itemId.toString()));
+        addBatchArgs(args, adds, "a");
+        addBatchArgs(args, sets, "s");
+        Long r = execute(userId, BATCH_SCRIPT, args.toArray(new String[0]));
+        markDirty(userId, r);
+        return r != 0;
+    }
+
+    private void addBatchArgs(List<String> args, List<Cart> carts, String mode) {
+        for (Cart cart : carts) {
+            args.add(cart.getItemId().toString());
+            args.add(toJson(cart));
+            args.add(cart.getNum().toString());
+            args.add(mode);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Cart> list(Long userId) {
+        List<String> keys = Arrays.asList(itemsKey(userId), numsKey(userId));
+        List<Object> result = redisTemplate.execute(LIST_SCRIPT, keys);
+        if (result != null && "missing".equals(result.get(0))) {
+            load(userId);
+            result = redisTemplate.execute(LIST_SCRIPT, keys);
+        }
+        List<String> items = (List<String>) result.get(0);
+        List<String> nums = (List<String>) result.get(1);
+        Map<String, String> numMap = new HashMap<>(nums.size() / 2);
+        for (int i = 0; i + 1 < nums.size(); i += 2) {
+            numMap.put(nums.get(i), nums.get(i + 1));
+        }
+        List<Cart> carts = new ArrayList<>(items.size() / 2);
+        for (int i = 0; i + 1 < items.size(); i += 2) {
+            String num = numMap.get(items.get(i));
+            if (num != null) {
+                carts.add(fromJson(items.get(i + 1)).setNum(Integer.valueOf(num)));
+            }
+        }
+        return carts;
+    }
+
+    @Override
+    public boolean updateNum(Long userId, Long cartId, Integer num) {
+        Long itemId = findItemId(userId, cartId);
+        if (itemId == null) {
+            return false;
+        }
+        Long r = execute(userId, UPDATE_NUM_SCRIPT, itemId.toString(), num.toString());
+        markDirty(userId, r);
+        return r == 1;
+    }
+
+    @Override
+    public void removeByItemIds(Long userId, Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        String[] args = itemIds.stream().map(String::valueOf).toArray(String[]::new);
+        markDirty(userId, execute(userId, REMOVE_SCRIPT, args));
+    }
+
+    @Override
+    public void removeById(Long userId, Long cartId) {
+        Long itemId = findItemId(userId, cartId);
+        if (itemId != null) {
+            removeByItemIds(userId, List.of(itemId));
+        }
+    }
+
+    @Override
+    public List<Long> drainDirty(int count) {
+        List<String> userIds = redisTemplate.opsForSet().pop(dirtyKey(), count);
+        List<Long> result = new ArrayList<>();
+        if (userIds != null) {
+            userIds.forEach(userId -> result.add(Long.valueOf(userId)));
+        }
+        return result;
+    }
+
+    @Override
+    public void markDirty(Long userId) {
+        redisTemplate.opsForSet().add(dirtyKey(), userId.toString());
+    }
+
+    /**
+     * 执行脚本，用户的购物车还没有加载时先加载再重试
+     */
+    private Long execute(Long userId, RedisScript<Long> script, String... args) {
+        List<String> keys = Arrays.asList(itemsKey(userId), numsKey(userId));
+        String[] argv = new String[args.length + 1];
+        argv[0] = String.valueOf(cartProperties.getStoreTtl().getSeconds());
+        System.arraycopy(args, 0, argv, 1, args.length);
+        Long r = redisTemplate.execute(script, keys, (Object[]) argv);
+        if (NOT_LOADED.equals(r)) {
+            load(userId);
+            r = redisTemplate.execute(script, keys, (Object[]) argv);
+        }
+        return r;
+    }
+
+    // 脚本执行成功后才标记，由于不在同一个slot，无法放进同一个脚本
+    private void markDirty(Long userId, Long r) {
+        if (r != null && r > 0) {
+            markDirty(userId);
+        }
+    }
+
+    private void load(Long userId) {
+        List<Cart> carts = cartLoader.load(userId);
+        List<String> argv = new ArrayList<>(carts.size() * 3 + 1);
+        argv.add(String.valueOf(cartProperties.getStoreTtl().getSeconds()));
+        for (Cart cart : carts) {
+            argv.add(cart.getItemId().toString());
+            argv.add(toJson(cart));
+            argv.add(cart.getNum().toString());
+        }
+        redisTemplate.execute(LOAD_SCRIPT, Arrays.asList(itemsKey(userId), numsKey(userId)), argv.toArray());
+        log.debug("加载用户{}的购物车到Redis，条目数：{}", userId, carts.size());
+    }
+
+    private Long findItemId(Long userId, Long cartId) {
+        for (Cart cart : list(userId)) {
+            if (cart.getId().equals(cartId)) {
+                return cart.getItemId();
+            }
+        }
+        return null;
+    }
+
+    private String toJson(Cart cart) {
+        try {
+            return objectMapper.writeValueAsString(cart);
+        } catch (JsonProcessingException e) {
+            throw new BizIllegalException("购物车数据序列化失败", e);
+        }
+    }
+
+    private Cart fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, Cart.class);
+        } catch (JsonProcessingException e) {
+            throw new BizIllegalException("购物车数据反序列化失败", e);
+        }
+    }
+
+    // 同一用户的key使用同一个hash tag，保证Lua脚本在集群模式下落在同一个slot
+    private String itemsKey(Long userId) {
+        return cartProperties.getKeyPrefix() + "{" + userId + "}:items";
+    }
+
+    private String numsKey(Long userId) {
+        return cartProperties.getKeyPrefix() + "{" + userId + "}:nums";
+    }
+
+    private String dirtyKey() {
+        return cartProperties.getKeyPrefix() + "dirty";
+    }
+}
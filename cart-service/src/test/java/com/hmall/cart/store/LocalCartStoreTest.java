@@ -0,0 +1,97 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.domain.po.Cart;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalCartStoreTest {
+
+    private final List<Cart> db = new ArrayList<>();
+    private LocalCartStore store;
+
+    @BeforeEach
+    void setUp() {
+        db.add(new Cart().setId(1L).setUserId(1L).setItemId(100L).setNum(2));
+        store = new LocalCartStore(userId -> {
+            List<Cart> carts = new ArrayList<>();
+            db.forEach(cart -> {
+                if (cart.getUserId().equals(userId)) {
+                    carts.add(cart);
+                }
+            });
+            return carts;
+        });
+    }
+
+    @Test
+    void testAddLoadsFromDbAndIncrements() {
+        assertEquals(CartStore.AddResult.INCREMENTED, store.add(1L, cart(2L, 100L), 10));
+        assertEquals(3, store.list(1L).get(0).getNum());
+
+        assertEquals(CartStore.AddResult.ADDED, store.add(1L, cart(3L, 200L), 10));
+        assertEquals(2, store.list(1L).size());
+        // 存储中的修改不会影响数据库
+        assertEquals(2, db.get(0).getNum());
+    }
+
+    @Test
+    void testAddWhenFull() {
+        assertEquals(CartStore.AddResult.FULL, store.add(1L, cart(2L, 200L), 1));
+        assertEquals(1, store.list(1L).size());
+        assertTrue(store.drainDirty(10).isEmpty());
+        // 已存在的商品不受数量限制
+        assertEquals(CartStore.AddResult.INCREMENTED, store.add(1L, cart(2L, 100L), 1));
+    }
+
+    @Test
+    void testUpdateAndRemove() {
+        assertTrue(store.updateNum(1L, 1L, 5));
+        assertFalse(store.updateNum(1L, 9L, 5));
+        assertEquals(5, store.list(1L).get(0).getNum());
+
+        store.add(1L, cart(2L, 200L), 10);
+        store.removeById(1L, 1L);
+        store.removeByItemIds(1L, List.of(200L));
+        assertTrue(store.list(1L).isEmpty());
+    }
+
+    @Test
+    void testBatchUpdateIsAtomic() {
+        store.add(1L, cart(2L, 200L), 10);
+        // 删除一个、新增两个后超过上限，任何修改都不生效
+        assertFalse(store.batchUpdate(1L, List.of(100L), List.of(cart(3L, 300L)), List.of(cart(4L, 400L)), 2));
+        assertEquals(2, store.list(1L).size());
+        assertEquals(2, store.list(1L).get(0).getNum());
+
+        // 删除腾出位置后可以新增，已存在的商品累加或设置数量
+        assertTrue(store.batchUpdate(1L, List.of(100L), List.of(cart(3L, 300L)), List.of(cart(5L, 200L).setNum(7)), 2));
+        List<Cart> carts = store.list(1L);
+        assertEquals(2, carts.size());
+        assertEquals(7, carts.get(0).getNum());
+        assertEquals(2L, carts.get(0).getId());
+        assertEquals(300L, carts.get(1).getItemId());
+    }
+
+    @Test
+    void testDrainDirty() {
+        store.add(1L, cart(2L, 200L), 10);
+        store.add(2L, cart(3L, 200L), 10);
+        store.add(3L, cart(4L, 200L), 10);
+
+        assertEquals(List.of(1L, 2L), store.drainDirty(2));
+        assertEquals(List.of(3L), store.drainDirty(2));
+        assertTrue(store.drainDirty(2).isEmpty());
+
+        store.markDirty(1L);
+        assertEquals(List.of(1L), store.drainDirty(2));
+    }
+
+    private static Cart cart(Long id, Long itemId) {
+        return new Cart().setId(id).setItemId(itemId).setNum(1);
+    }
+}
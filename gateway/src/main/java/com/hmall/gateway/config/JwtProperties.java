@@ -13,4 +13,40 @@ public class JwtProperties {
     private String password;
     private String alias;
     private Duration tokenTTL = Duration.ofMinutes(10);
+    /**
+     * 校验通过的token缓存
+     */
+    private Cache cache = new Cache();
+    /**
+     * 缓存未命中时的验签线程池
+     */
+    private Verifier verifier = new Verifier();
+
+    @Data
+    public static class Cache {
+        /**
+         * 是否缓存校验结果，关闭时每个请求都做RS256验签
+         */
+        private Boolean enabled = true;
+        /**
+         * 最多缓存的token数量
+         */
+        private Long maximumSize = 100000L;
+        /**
+         * 没有过期时间的token最长缓存时间
+         */
+        private Duration maxTtl = Duration.ofMinutes(30);
+    }
+
+    @Data
+    public static class Verifier {
+        /**
+         * 验签线程数，验签是纯CPU计算，默认与CPU核数相同
+         */
+        private Integer threadCap = Runtime.getRuntime().availableProcessors();
+        /**
+         * 所有验签线程合计排队等待的最大请求数，由TokenVerifier在提交前检查，超出时直接返回503
+         */
+        private Integer queuedTaskCap = 10000;
+    }
 }
@@ -6,6 +6,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.rsa.crypto.KeyStoreKeyFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.security.KeyPair;
 
@@ -30,4 +32,15 @@ public class SecurityConfig {
                 properties.getAlias(),
                 properties.getPassword().toCharArray());
     }
-}
\ No newline at end of file
+
+    /**
+     * RS256验签专用的有界线程池，不占用reactor-netty的IO线程。
+     * 这里的队列上限是每个线程各自的，全局的排队上限由TokenVerifier控制
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jwtVerifyScheduler(JwtProperties properties) {
+        JwtProperties.Verifier verifier = properties.getVerifier();
+        return Schedulers.newBoundedElastic(
+                verifier.getThreadCap(), verifier.getQueuedTaskCap(), "jwt-verify");
+    }
+}
@@ -2,8 +2,8 @@ package com.hmall.gateway.filters;
 
 import cn.hutool.core.collection.CollUtil;
 import com.hmall.common.exception.UnauthorizedException;
-import com.hmall.gateway.config.AuthProperties;
-import com.hmall.gateway.utils.JwtTool;
+import com.hmall.gateway.utils.ExcludePathMatcher;
+import com.hmall.gateway.utils.TokenVerifier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
@@ -13,26 +13,24 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class AuthGlobalFilter implements GlobalFilter, Ordered {
-    private final AuthProperties authProperties;
-    private final JwtTool jwtTool;
-
-    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    private final TokenVerifier tokenVerifier;
+    private final ExcludePathMatcher excludePathMatcher;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         ServerHttpRequest request = exchange.getRequest();
 
-        if (isExclude(request.getPath().toString())) {
+        if (excludePathMatcher.matches(request.getPath())) {
             return chain.filter(exchange);
         }
 
@@ -43,31 +41,26 @@ public class AuthGlobalFilter implements GlobalFilter, Ordered {
             token = authorization.get(0);
         }
 
-        Long userId;
-        try {
-            userId = jwtTool.parseToken(token);
-        } catch (UnauthorizedException e) {
-            ServerHttpResponse response = exchange.getResponse();
-            response.setStatusCode(HttpStatus.UNAUTHORIZED);
-            return response.setComplete();
-        }
-        String userInfo = userId.toString();
-        log.info("userId = {}", userInfo);
-
-        ServerWebExchange serverWebExchange = exchange.mutate()
-                .request(builder -> builder.header("user-info", userInfo))
-                .build();
-
-        return chain.filter(serverWebExchange);
+        // 缓存未命中时在jwtVerifyScheduler上验签，不阻塞IO线程
+        return tokenVerifier.parseToken(token)
+                .map(userId -> {
+                    String userInfo = userId.toString();
+                    log.debug("userId = {}", userInfo);
+                    return exchange.mutate()
+                            .request(builder -> builder.header("user-info", userInfo))
+                            .build();
+                })
+                .onErrorResume(UnauthorizedException.class,
+                        e -> reject(exchange, HttpStatus.UNAUTHORIZED))
+                .onErrorResume(RejectedExecutionException.class,
+                        e -> reject(exchange, HttpStatus.SERVICE_UNAVAILABLE))
+                .flatMap(chain::filter);
     }
 
-    private boolean isExclude(String path) {
-        for (String excludePath : authProperties.getExcludePaths()) {
-            if (antPathMatcher.match(excludePath, path)) {
-                return true;
-            }
-        }
-        return false;
+    private Mono<ServerWebExchange> reject(ServerWebExchange exchange, HttpStatus status) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        return response.setComplete().then(Mono.empty());
     }
 
     @Override
@@ -4,31 +4,60 @@ import cn.hutool.json.JSONUtil;
 import com.alibaba.cloud.nacos.NacosConfigManager;
 import com.alibaba.nacos.api.config.listener.Listener;
 import com.alibaba.nacos.api.exception.NacosException;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinitionWriter;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.annotation.PostConstruct;
-import java.util.HashSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executor;
 
+/**
+ * 从nacos的gateway-routes.json加载路由，配置变化时按差异更新。
+ * <p>
+ * 先保存新增和变化的路由（同id直接覆盖，不会出现路由缺失的窗口），再删除已移除的路由，
+ * 最后发布一次RefreshRoutesEvent，路由缓存一次性切换到新的路由表。
+ * 每次成功应用的路由表保存为一个版本，应用失败时自动恢复到上一个版本，也可以手动回滚到最近的版本。
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class DynamicRouteLoader {
     private final NacosConfigManager nacosConfigManager;
     private final RouteDefinitionWriter routeDefinitionWriter;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     private final static String dataId = "gateway-routes.json";
     private final static String group = "DEFAULT_GROUP";
+    /**
+     * 保留的历史版本数量
+     */
+    private final static int MAX_SNAPSHOTS = 10;
+    private final static Duration APPLY_TIMEOUT = Duration.ofSeconds(10);
 
-    private final Set<String> routeIds = new HashSet<>();
+    /**
+     * 已经应用的路由表，最新的版本在最前面
+     */
+    private final Deque<RouteSnapshot> snapshots = new ArrayDeque<>();
+    private int nextVersion = 1;
 
     @PostConstruct
     public void initRouteConfigListener() throws NacosException {
@@ -50,18 +79,139 @@ public class DynamicRouteLoader {
 
     }
 
-    public void updateConfigInfo(String configInfo) {
+    public synchronized void updateConfigInfo(String configInfo) {
         log.debug("get route config {}", configInfo);
-        List<RouteDefinition> routeDefinitions = JSONUtil.toList(configInfo, RouteDefinition.class);
+        Map<String, RouteDefinition> target;
+        try {
+            target = parse(configInfo);
+        } catch (RuntimeException e) {
+            // 配置有误时保持当前路由不变
+            log.error("路由配置解析失败，保持当前路由，配置：{}", configInfo, e);
+            return;
+        }
+        apply(target);
+    }
+
+    /**
+     * 回滚到上一个版本
+     *
+     * @return 回滚后的版本号，没有可回滚的版本时返回null
+     */
+    public synchronized Integer rollback() {
+        if (snapshots.size() < 2) {
+            return null;
+        }
+        Integer current = snapshots.peekFirst().getVersion();
+        for (RouteSnapshot snapshot : snapshots) {
+            if (snapshot.getVersion() < current) {
+                return rollback(snapshot.getVersion());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 回滚到指定版本，回滚本身也会生成一个新版本
+     *
+     * @param version 版本号
+     * @return 回滚后的版本号，版本不存在时返回null
+     */
+    public synchronized Integer rollback(int version) {
+        for (RouteSnapshot snapshot : snapshots) {
+            if (snapshot.getVersion() == version) {
+                log.info("回滚路由到版本：{}", version);
+                return apply(snapshot.getRoutes());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 已保存的版本，最新的在最前面
+     */
+    public synchronized List<RouteSnapshot> getSnapshots() {
+        return new ArrayList<>(snapshots);
+    }
 
-        routeIds.forEach(id -> routeDefinitionWriter.delete(Mono.just(id)).subscribe());
-        routeIds.clear();
+    private Integer apply(Map<String, RouteDefinition> target) {
+        RouteSnapshot current = snapshots.peekFirst();
+        Map<String, RouteDefinition> routes = current == null ? Collections.emptyMap() : current.getRoutes();
+        if (routes.equals(target)) {
+            log.debug("路由没有变化");
+            return current == null ? null : current.getVersion();
+        }
+        try {
+            write(routes, target);
+        } catch (RuntimeException e) {
+            log.error("路由更新失败，恢复到版本：{}", current == null ? null : current.getVersion(), e);
+            try {
+                write(target, routes);
+            } catch (RuntimeException ex) {
+                log.error("路由恢复失败", ex);
+            }
+            eventPublisher.publishEvent(new RefreshRoutesEvent(this));
+            return current == null ? null : current.getVersion();
+        }
+        eventPublisher.publishEvent(new RefreshRoutesEvent(this));
 
+        RouteSnapshot snapshot = new RouteSnapshot(nextVersion++, Collections.unmodifiableMap(target));
+        snapshots.addFirst(snapshot);
+        while (snapshots.size() > MAX_SNAPSHOTS) {
+            snapshots.removeLast();
+        }
+        return snapshot.getVersion();
+    }
 
-        routeDefinitions.forEach(rd -> {
-            routeDefinitionWriter.save(Mono.just(rd)).subscribe();
-            routeIds.add(rd.getId());
+    /**
+     * 把路由从from更新为to：先保存新增和变化的路由，再删除已移除的路由
+     */
+    private void write(Map<String, RouteDefinition> from, Map<String, RouteDefinition> to) {
+        List<RouteDefinition> saves = new ArrayList<>();
+        to.forEach((id, rd) -> {
+            if (!Objects.equals(from.get(id), rd)) {
+                saves.add(rd);
+            }
+        });
+        List<String> deletes = new ArrayList<>();
+        from.keySet().forEach(id -> {
+            if (!to.containsKey(id)) {
+                deletes.add(id);
+            }
         });
-        
+        Flux.fromIterable(saves)
+                .concatMap(rd -> routeDefinitionWriter.save(Mono.just(rd)))
+                .thenMany(Flux.fromIterable(deletes)
+                        .concatMap(id -> routeDefinitionWriter.delete(Mono.just(id))
+                                // 已经不存在的路由不影响结果
+                                .onErrorResume(NotFoundException.class, e -> Mono.empty())))
+                .then()
+                .block(APPLY_TIMEOUT);
+        log.info("路由更新完成，新增或变化：{}，删除：{}", saves.size(), deletes);
+    }
+
+    private static Map<String, RouteDefinition> parse(String configInfo) {
+        List<RouteDefinition> routeDefinitions = JSONUtil.toList(configInfo, RouteDefinition.class);
+        Map<String, RouteDefinition> routes = new LinkedHashMap<>(routeDefinitions.size());
+        for (RouteDefinition rd : routeDefinitions) {
+            if (rd.getId() == null || rd.getUri() == null) {
+                throw new IllegalArgumentException("路由缺少id或uri：" + rd);
+            }
+            if (routes.put(rd.getId(), rd) != null) {
+                throw new IllegalArgumentException("路由id重复：" + rd.getId());
+            }
+        }
+        return routes;
+    }
+
+    @Getter
+    public static class RouteSnapshot {
+        private final int version;
+        private final Map<String, RouteDefinition> routes;
+        private final LocalDateTime appliedAt = LocalDateTime.now();
+
+        RouteSnapshot(int version, Map<String, RouteDefinition> routes) {
+            this.version = version;
+            this.routes = routes;
+        }
     }
 }
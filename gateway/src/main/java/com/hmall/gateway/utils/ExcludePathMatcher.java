@@ -0,0 +1,148 @@
+package com.hmall.gateway.utils;
+
+import com.hmall.gateway.config.AuthProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import org.springframework.web.util.pattern.PatternParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 判断请求路径是否在hm.auth.excludePaths中。
+ * <p>
+ * 启动时把所有路径预编译为PathPattern，并按第一段路径分桶：以固定字符串开头的规则只在第一段相同的请求上匹配，
+ * 以通配符开头的规则放在公共桶中，每个请求只需要查一次哈希表再匹配少量规则，与规则总数基本无关。
+ * 配置刷新后excludePaths会被重新绑定为新的列表，下一次匹配时发现列表变化即重新编译。
+ * PathPattern不支持的写法（例如中间的**）仍用AntPathMatcher匹配。
+ */
+@Slf4j
+@Component
+public class ExcludePathMatcher {
+
+    private static final AntPathMatcher ANT_PATH_MATCHER = new AntPathMatcher();
+
+    private final AuthProperties authProperties;
+    private volatile Compiled compiled;
+
+    public ExcludePathMatcher(AuthProperties authProperties) {
+        this.authProperties = authProperties;
+        this.compiled = Compiled.of(authProperties.getExcludePaths());
+    }
+
+    public boolean matches(String path) {
+        return matches(PathContainer.parsePath(path));
+    }
+
+    public boolean matches(PathContainer path) {
+        Compiled current = compiled;
+        List<String> excludePaths = authProperties.getExcludePaths();
+        if (current.source != excludePaths) {
+            current = Compiled.of(excludePaths);
+            compiled = current;
+            log.info("重新编译免登录路径，数量：{}", current.size);
+        }
+        return current.matches(path);
+    }
+
+    private static class Compiled {
+        private final List<String> source;
+        private final int size;
+        /**
+         * 第一段路径到规则的映射
+         */
+        private final Map<String, List<PathPattern>> buckets = new HashMap<>();
+        /**
+         * 以通配符或变量开头的规则，所有请求都要匹配
+         */
+        private final List<PathPattern> wildcards = new ArrayList<>();
+        /**
+         * PathPattern无法解析的规则
+         */
+        private final List<String> antPatterns = new ArrayList<>();
+
+        private Compiled(List<String> source) {
+            this.source = source;
+            this.size = source == null ? 0 : source.size();
+        }
+
+        static Compiled of(List<String> excludePaths) {
+            Compiled compiled = new Compiled(excludePaths);
+            if (excludePaths == null) {
+                return compiled;
+            }
+            PathPatternParser parser = new PathPatternParser();
+            for (String excludePath : excludePaths) {
+                PathPattern pattern;
+                try {
+                    pattern = parser.parse(excludePath);
+                } catch (PatternParseException e) {
+                    compiled.antPatterns.add(excludePath);
+                    continue;
+                }
+                String first = firstSegment(excludePath);
+                if (first == null) {
+                    compiled.wildcards.add(pattern);
+                } else {
+                    compiled.buckets.computeIfAbsent(first, k -> new ArrayList<>()).add(pattern);
+                }
+            }
+            return compiled;
+        }
+
+        boolean matches(PathContainer path) {
+            List<PathPattern> bucket = buckets.getOrDefault(firstSegment(path), Collections.emptyList());
+            for (PathPattern pattern : bucket) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            for (PathPattern pattern : wildcards) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            if (!antPatterns.isEmpty()) {
+                String value = path.value();
+                for (String antPattern : antPatterns) {
+                    if (ANT_PATH_MATCHER.match(antPattern, value)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 规则的第一段，包含通配符或变量时返回null
+         */
+        private static String firstSegment(String pattern) {
+            int start = pattern.startsWith("/") ? 1 : 0;
+            int end = pattern.indexOf('/', start);
+            String first = end < 0 ? pattern.substring(start) : pattern.substring(start, end);
+            for (int i = 0; i < first.length(); i++) {
+                char c = first.charAt(i);
+                if (c == '*' || c == '?' || c == '{') {
+                    return null;
+                }
+            }
+            return first;
+        }
+
+        private static String firstSegment(PathContainer path) {
+            for (PathContainer.Element element : path.elements()) {
+                if (element instanceof PathContainer.PathSegment) {
+                    return ((PathContainer.PathSegment) element).valueToMatch();
+                }
+            }
+            return "";
+        }
+    }
+}
@@ -6,6 +6,8 @@ import cn.hutool.jwt.JWTValidator;
 import cn.hutool.jwt.signers.JWTSigner;
 import cn.hutool.jwt.signers.JWTSignerUtil;
 import com.hmall.common.exception.UnauthorizedException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.security.KeyPair;
@@ -36,6 +38,16 @@ public class JwtTool {
      * @return 解析刷新token得到的用户信息
      */
     public Long parseToken(String token) {
+        return verifyToken(token).getUserId();
+    }
+
+    /**
+     * 校验并解析token
+     *
+     * @param token token
+     * @return 用户信息和token的过期时间
+     */
+    public VerifiedToken verifyToken(String token) {
         // 1.校验token是否为空
         if (token == null) {
             throw new UnauthorizedException("未登录");
@@ -66,11 +78,24 @@ public class JwtTool {
         }
 
         // 5.数据解析
+        Long userId;
         try {
-            return Long.valueOf(userPayload.toString());
+            userId = Long.valueOf(userPayload.toString());
         } catch (RuntimeException e) {
             // 数据格式有误
             throw new UnauthorizedException("无效的token");
         }
+        Object exp = jwt.getPayload(JWT.EXPIRES_AT);
+        return new VerifiedToken(userId, exp == null ? null : Long.parseLong(exp.toString()) * 1000);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class VerifiedToken {
+        private final Long userId;
+        /**
+         * 过期时间戳，单位毫秒，token中没有exp时为null
+         */
+        private final Long expiresAt;
     }
-}
\ No newline at end of file
+}
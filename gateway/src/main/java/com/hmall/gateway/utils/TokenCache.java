@@ -0,0 +1,148 @@
+package com.hmall.gateway.utils;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.hmall.common.exception.UnauthorizedException;
+import com.hmall.gateway.config.JwtProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存校验通过的token，热点token只需要一次哈希和一次缓存查询，不再每次做RS256验签。
+ * <p>
+ * key是token的SHA-256，value是用户id和过期时间；缓存项在token过期的时刻失效，
+ * 命中时也会再比较一次过期时间，过期的token不会因为缓存而被放行。
+ * 校验失败的token不缓存。吊销的token记录到过期为止，期间即使签名有效也会被拒绝。
+ */
+@Component
+public class TokenCache {
+
+    private final JwtTool jwtTool;
+    private final boolean enabled;
+    private final long maxTtlMillis;
+    private final Cache<String, JwtTool.VerifiedToken> verified;
+    private final Cache<String, JwtTool.VerifiedToken> revoked;
+
+    public TokenCache(JwtTool jwtTool, JwtProperties jwtProperties) {
+        this.jwtTool = jwtTool;
+        JwtProperties.Cache config = jwtProperties.getCache();
+        this.enabled = config.getEnabled();
+        this.maxTtlMillis = config.getMaxTtl().toMillis();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfter(new TokenExpiry())
+                .build();
+        this.revoked = Caffeine.newBuilder()
+                .expireAfter(new TokenExpiry())
+                .build();
+    }
+
+    /**
+     * 解析token，效果与 {@link JwtTool#parseToken(String)} 相同
+     *
+     * @param token token
+     * @return 用户id
+     */
+    public Long parseToken(String token) {
+        Long userId = getCached(token);
+        return userId != null ? userId : verify(token);
+    }
+
+    /**
+     * 只查询缓存，不验签
+     *
+     * @param token token
+     * @return 缓存中的用户id，未命中或未开启缓存时返回null
+     * @throws UnauthorizedException token为空或已被吊销
+     */
+    public Long getCached(String token) {
+        if (token == null) {
+            throw new UnauthorizedException("未登录");
+        }
+        if (!enabled) {
+            return null;
+        }
+        String key = DigestUtil.sha256Hex(token);
+        if (revoked.getIfPresent(key) != null) {
+            throw new UnauthorizedException("token已经失效");
+        }
+        JwtTool.VerifiedToken cached = verified.getIfPresent(key);
+        if (cached != null && !isExpired(cached)) {
+            return cached.getUserId();
+        }
+        return null;
+    }
+
+    /**
+     * 验签并把结果放入缓存，验签比较耗CPU，不要在IO线程上调用
+     *
+     * @param token token
+     * @return 用户id
+     */
+    public Long verify(String token) {
+        JwtTool.VerifiedToken result = jwtTool.verifyToken(token);
+        if (enabled) {
+            verified.put(DigestUtil.sha256Hex(token), result);
+        }
+        return result.getUserId();
+    }
+
+    /**
+     * 吊销token，例如用户退出登录或修改密码后调用，到token过期为止都会被拒绝
+     *
+     * @param token token
+     */
+    public void revoke(String token) {
+        String key = DigestUtil.sha256Hex(token);
+        JwtTool.VerifiedToken cached = verified.getIfPresent(key);
+        verified.invalidate(key);
+        if (cached == null) {
+            try {
+                cached = jwtTool.verifyToken(token);
+            } catch (UnauthorizedException e) {
+                // 无效或已过期的token本来就会被拒绝
+                return;
+            }
+        }
+        revoked.put(key, cached);
+    }
+
+    /**
+     * 清空缓存，例如更换签名密钥后调用
+     */
+    public void invalidateAll() {
+        verified.invalidateAll();
+    }
+
+    private static boolean isExpired(JwtTool.VerifiedToken token) {
+        return token.getExpiresAt() != null && token.getExpiresAt() <= System.currentTimeMillis();
+    }
+
+    /**
+     * 缓存项在token过期时失效，没有过期时间的token最多缓存maxTtl
+     */
+    private class TokenExpiry implements Expiry<String, JwtTool.VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String key, JwtTool.VerifiedToken value, long currentTime) {
+            long ttl = value.getExpiresAt() == null
+                    ? maxTtlMillis
+                    : value.getExpiresAt() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(ttl, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtTool.VerifiedToken value, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtTool.VerifiedToken value, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
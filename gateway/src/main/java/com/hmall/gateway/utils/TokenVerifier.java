@@ -0,0 +1,100 @@
+package com.hmall.gateway.utils;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import com.hmall.gateway.config.JwtProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在IO线程之外解析token：缓存命中时直接返回，未命中时把RS256验签提交到jwtVerifyScheduler执行。
+ * <p>
+ * 指标：hm.gateway.jwt.verify.queued 等待验签的请求数，hm.gateway.jwt.verify 单次验签耗时。
+ * 所有验签线程合计的排队数超过hm.jwt.verifier.queued-task-cap时，不再提交任务，返回的Mono以RejectedExecutionException结束。
+ * newBoundedElastic的队列上限是每个线程各自的，不能代替这里的全局上限。
+ */
+@Component
+public class TokenVerifier {
+
+    private final TokenCache tokenCache;
+    private final Scheduler scheduler;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int queuedTaskCap;
+    private final Timer verifyTimer;
+
+    public TokenVerifier(TokenCache tokenCache, Scheduler jwtVerifyScheduler, JwtProperties properties,
+                         ObjectProvider<MeterRegistry> registry) {
+        this.tokenCache = tokenCache;
+        this.scheduler = jwtVerifyScheduler;
+        this.queuedTaskCap = properties.getVerifier().getQueuedTaskCap();
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        if (meterRegistry == null) {
+            this.verifyTimer = null;
+            return;
+        }
+        Gauge.builder("hm.gateway.jwt.verify.queued", queued, AtomicInteger::get)
+                .description("等待验签的请求数")
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("hm.gateway.jwt.verify")
+                .description("缓存未命中时的验签耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 解析token得到用户id
+     *
+     * @param token token
+     * @return 用户id，token无效时以UnauthorizedException结束
+     */
+    public Mono<Long> parseToken(String token) {
+        Long cached;
+        try {
+            cached = tokenCache.getCached(token);
+        } catch (RuntimeException e) {
+            return Mono.error(e);
+        }
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.defer(() -> {
+            if (queued.incrementAndGet() > queuedTaskCap) {
+                // 订阅之前拒绝，不占用验签线程的队列
+                queued.decrementAndGet();
+                return Mono.error(new RejectedExecutionException("验签排队数超过" + queuedTaskCap));
+            }
+            AtomicBoolean started = new AtomicBoolean();
+            return Mono.fromCallable(() -> {
+                        started.set(true);
+                        queued.decrementAndGet();
+                        return verify(token);
+                    })
+                    .subscribeOn(scheduler)
+                    .doFinally(signal -> {
+                        // 被拒绝或取消时任务没有执行，需要在这里减掉排队数
+                        if (started.compareAndSet(false, true)) {
+                            queued.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+    private Long verify(String token) {
+        if (verifyTimer == null) {
+            return tokenCache.verify(token);
+        }
+        long start = System.nanoTime();
+        try {
+            return tokenCache.verify(token);
+        } finally {
+            verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.hmall.gateway.filters;
+
+import com.hmall.gateway.utils.JwtTool;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.security.rsa.crypto.KeyStoreKeyFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 网关压测，需要先启动网关和下游服务。
+ * <p>
+ * 以 -Dbench.rps（默认10000）的速率发送需要登录的请求，同时以低频率请求免登录的/hi，
+ * /hi本身几乎没有开销，它的耗时反映了IO线程的排队延迟。
+ * 网关以 -Dhm.jwt.cache.enabled=false 启动时每个请求都要验签，对比改动前后/hi的p99。
+ * <pre>
+ * mvn -pl gateway test -Dtest=AuthGlobalFilterLoadTest -Dbench.gateway-url=http://localhost:8080
+ * </pre>
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "bench.gateway-url", matches = ".+")
+class AuthGlobalFilterLoadTest {
+
+    private final String gatewayUrl = System.getProperty("bench.gateway-url");
+    private final int rps = Integer.getInteger("bench.rps", 10000);
+    private final int seconds = Integer.getInteger("bench.seconds", 30);
+    private final String authPath = System.getProperty("bench.auth-path", "/carts");
+    private final int tokens = Integer.getInteger("bench.tokens", 1000);
+
+    @Test
+    void measureEventLoopLatency() {
+        List<String> tokenPool = createTokens();
+        WebClient client = WebClient.builder()
+                .baseUrl(gatewayUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(
+                        ConnectionProvider.builder("bench")
+                                .maxConnections(2000)
+                                .pendingAcquireMaxCount(-1)
+                                .build())))
+                .build();
+
+        // 每毫秒发送rps/1000个需要登录的请求
+        int perTick = Math.max(rps / 1000, 1);
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger unavailable = new AtomicInteger();
+        Mono<Void> load = Flux.interval(Duration.ofMillis(1))
+                .take(Duration.ofSeconds(seconds))
+                .onBackpressureDrop()
+                .flatMap(tick -> Flux.range(0, perTick), Integer.MAX_VALUE)
+                .flatMap(i -> client.get().uri(authPath)
+                        .header("authorization", tokenPool.get(sent.getAndIncrement() % tokenPool.size()))
+                        .exchangeToMono(response -> {
+                            if (response.rawStatusCode() == 503) {
+                                unavailable.incrementAndGet();
+                            }
+                            return response.releaseBody();
+                        })
+                        .onErrorResume(e -> Mono.empty()), Integer.MAX_VALUE)
+                .then();
+
+        // 每10ms探测一次免登录接口
+        List<Long> probe = Collections.synchronizedList(new ArrayList<>());
+        Mono<Void> probes = Flux.interval(Duration.ofMillis(10))
+                .take(Duration.ofSeconds(seconds))
+                .onBackpressureDrop()
+                .concatMap(tick -> {
+                    long begin = System.nanoTime();
+                    return client.get().uri("/hi")
+                            .exchangeToMono(response -> response.releaseBody())
+                            .onErrorResume(e -> Mono.empty())
+                            .doFinally(s -> probe.add(System.nanoTime() - begin));
+                })
+                .then();
+
+        long start = System.nanoTime();
+        Mono.when(load, probes).block(Duration.ofSeconds(seconds + 60L));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Long[] sorted = probe.toArray(new Long[0]);
+        Arrays.sort(sorted);
+        log.info("请求数：{}，实际速率：{} rps，503：{}，/hi探测：{}次，p50：{}ms，p99：{}ms，max：{}ms",
+                sent.get(), sent.get() * 1000L / Math.max(elapsedMillis, 1), unavailable.get(), sorted.length,
+                millis(sorted, 0.5), millis(sorted, 0.99), millis(sorted, 1.0));
+    }
+
+    private List<String> createTokens() {
+        KeyPair keyPair = new KeyStoreKeyFactory(new ClassPathResource("hmall.jks"), "hmall123".toCharArray())
+                .getKeyPair("hmall", "hmall123".toCharArray());
+        JwtTool jwtTool = new JwtTool(keyPair);
+        List<String> pool = new ArrayList<>(tokens);
+        for (long userId = 1; userId <= tokens; userId++) {
+            pool.add(jwtTool.createToken(userId, Duration.ofHours(1)));
+        }
+        return pool;
+    }
+
+    private static double millis(Long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,87 @@
+package com.hmall.gateway.routers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.route.InMemoryRouteDefinitionRepository;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DynamicRouteLoaderTest {
+
+    private static final String V1 = "[" +
+            "{\"id\":\"item\",\"uri\":\"lb://item-service\",\"predicates\":[{\"name\":\"Path\",\"args\":{\"pattern\":\"/items/**\"}}]}," +
+            "{\"id\":\"cart\",\"uri\":\"lb://cart-service\",\"predicates\":[{\"name\":\"Path\",\"args\":{\"pattern\":\"/carts/**\"}}]}]";
+    private static final String V2 = "[" +
+            "{\"id\":\"item\",\"uri\":\"lb://item-service\",\"predicates\":[{\"name\":\"Path\",\"args\":{\"pattern\":\"/items/**,/search/**\"}}]}," +
+            "{\"id\":\"trade\",\"uri\":\"lb://trade-service\",\"predicates\":[{\"name\":\"Path\",\"args\":{\"pattern\":\"/orders/**\"}}]}]";
+
+    private InMemoryRouteDefinitionRepository repository;
+    private List<Object> events;
+    private DynamicRouteLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryRouteDefinitionRepository();
+        events = new ArrayList<>();
+        loader = new DynamicRouteLoader(null, repository, events::add);
+    }
+
+    @Test
+    void testApplyDiffWithSingleRefresh() {
+        loader.updateConfigInfo(V1);
+        assertEquals(1, events.size());
+        assertEquals(List.of("cart", "item"), routeIds());
+
+        loader.updateConfigInfo(V2);
+        assertEquals(2, events.size());
+        assertTrue(events.get(1) instanceof RefreshRoutesEvent);
+        assertEquals(List.of("item", "trade"), routeIds());
+        assertEquals("/items/**,/search/**", routes().get("item").getPredicates().get(0).getArgs().get("pattern"));
+
+        // 配置没有变化时不刷新
+        loader.updateConfigInfo(V2);
+        assertEquals(2, events.size());
+        assertEquals(2, loader.getSnapshots().size());
+    }
+
+    @Test
+    void testInvalidConfigKeepsRoutes() {
+        loader.updateConfigInfo(V1);
+        loader.updateConfigInfo("[{\"id\":\"item\",\"uri\":\"lb://item-service\"},{\"id\":\"item\",\"uri\":\"lb://x\"}]");
+        loader.updateConfigInfo("not json");
+        assertEquals(1, events.size());
+        assertEquals(List.of("cart", "item"), routeIds());
+    }
+
+    @Test
+    void testRollback() {
+        loader.updateConfigInfo(V1);
+        loader.updateConfigInfo(V2);
+
+        Integer version = loader.rollback();
+        assertEquals(3, version);
+        assertEquals(List.of("cart", "item"), routeIds());
+        assertEquals("/items/**", routes().get("item").getPredicates().get(0).getArgs().get("pattern"));
+
+        assertEquals(4, loader.rollback(2));
+        assertEquals(List.of("item", "trade"), routeIds());
+        assertNull(loader.rollback(99));
+    }
+
+    private Map<String, RouteDefinition> routes() {
+        return repository.getRouteDefinitions().collectList().block().stream()
+                .collect(Collectors.toMap(RouteDefinition::getId, Function.identity()));
+    }
+
+    private List<String> routeIds() {
+        return routes().keySet().stream().sorted().collect(Collectors.toList());
+    }
+}
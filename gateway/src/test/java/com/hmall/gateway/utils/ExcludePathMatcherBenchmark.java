@@ -0,0 +1,82 @@
+package com.hmall.gateway.utils;
+
+import com.hmall.gateway.config.AuthProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比逐个AntPathMatcher匹配和预编译匹配在不同规则数量下的单次耗时，
+ * 请求路径不命中任何规则（需要登录的接口，也是最常见的情况）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcludePathMatcherBenchmark {
+
+    @Param({"5", "50", "500"})
+    private int patterns;
+
+    private List<String> excludePaths;
+    private ExcludePathMatcher matcher;
+    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    private final String path = "/carts/batch";
+    private final PathContainer pathContainer = PathContainer.parsePath(path);
+
+    @Setup
+    public void setup() {
+        excludePaths = new ArrayList<>(patterns);
+        excludePaths.add("/search/**");
+        excludePaths.add("/users/login");
+        excludePaths.add("/items/**");
+        excludePaths.add("/hi");
+        excludePaths.add("/*/public/**");
+        for (int i = excludePaths.size(); i < patterns; i++) {
+            excludePaths.add("/module" + i + "/api/**");
+        }
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.setExcludePaths(excludePaths);
+        matcher = new ExcludePathMatcher(authProperties);
+    }
+
+    @Benchmark
+    public boolean antLoop() {
+        for (String excludePath : excludePaths) {
+            if (antPathMatcher.match(excludePath, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return matcher.matches(pathContainer);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExcludePathMatcherBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
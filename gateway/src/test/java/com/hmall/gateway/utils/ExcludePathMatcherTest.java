@@ -0,0 +1,41 @@
+package com.hmall.gateway.utils;
+
+import com.hmall.gateway.config.AuthProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcludePathMatcherTest {
+
+    private static final List<String> EXCLUDE_PATHS = Arrays.asList(
+            "/search/**", "/users/login", "/items/**", "/hi", "/*/public/**", "/pay-orders/**/callback");
+
+    @Test
+    void testSameResultAsAntPathMatcher() {
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.setExcludePaths(EXCLUDE_PATHS);
+        ExcludePathMatcher matcher = new ExcludePathMatcher(authProperties);
+        AntPathMatcher antPathMatcher = new AntPathMatcher();
+
+        for (String path : Arrays.asList("/search/list", "/search", "/users/login", "/users/me", "/items/1",
+                "/hi", "/hello", "/carts", "/carts/public/x", "/pay-orders/1/2/callback", "/pay-orders/1")) {
+            boolean expected = EXCLUDE_PATHS.stream().anyMatch(p -> antPathMatcher.match(p, path));
+            assertEquals(expected, matcher.matches(path), path);
+        }
+    }
+
+    @Test
+    void testRecompileAfterRefresh() {
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.setExcludePaths(Arrays.asList("/hi"));
+        ExcludePathMatcher matcher = new ExcludePathMatcher(authProperties);
+        assertFalse(matcher.matches("/carts"));
+
+        authProperties.setExcludePaths(Arrays.asList("/hi", "/carts/**"));
+        assertTrue(matcher.matches("/carts"));
+    }
+}
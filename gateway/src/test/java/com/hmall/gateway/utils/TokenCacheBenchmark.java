@@ -0,0 +1,68 @@
+package com.hmall.gateway.utils;
+
+import com.hmall.gateway.config.JwtProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比每次RS256验签和缓存命中的单次耗时。
+ * <p>
+ * 运行：在IDE中执行main方法，或 mvn -pl gateway test-compile 后用test classpath运行本类
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenCacheBenchmark {
+
+    private JwtTool jwtTool;
+    private TokenCache tokenCache;
+    private String token;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        jwtTool = new JwtTool(keyPair);
+        tokenCache = new TokenCache(jwtTool, new JwtProperties());
+        token = jwtTool.createToken(1L, Duration.ofHours(1));
+        // 预先放入缓存
+        tokenCache.parseToken(token);
+    }
+
+    @Benchmark
+    public Long verify() {
+        return jwtTool.parseToken(token);
+    }
+
+    @Benchmark
+    public Long cached() {
+        return tokenCache.parseToken(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TokenCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
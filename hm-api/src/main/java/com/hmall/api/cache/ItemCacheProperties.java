@@ -0,0 +1,23 @@
+package com.hmall.api.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "hm.item-cache")
+public class ItemCacheProperties {
+    /**
+     * 是否开启商品本地缓存，开启后注册ItemClientCache并监听商品变更消息，需要服务注册了ItemClient
+     */
+    private Boolean enabled = false;
+    /**
+     * 最多缓存的商品数量
+     */
+    private Long maximumSize = 10000L;
+    /**
+     * 写入后的过期时间，变更消息丢失时的兜底
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(5);
+}
@@ -0,0 +1,30 @@
+package com.hmall.api.cache;
+
+import com.hmall.common.constants.ItemMqConstants;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+
+import java.util.List;
+
+/**
+ * 监听商品变更消息，失效本地缓存。
+ * 每个实例都需要收到消息，所以使用匿名的自动删除队列，而不是多个实例共享同一个队列
+ */
+@RequiredArgsConstructor
+public class ItemChangeListener {
+
+    private final ItemClientCache itemClientCache;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(value = ItemMqConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMqConstants.ALL_KEY
+    ))
+    public void listenItemChanged(List<Long> itemIds) {
+        itemClientCache.invalidate(itemIds);
+    }
+}
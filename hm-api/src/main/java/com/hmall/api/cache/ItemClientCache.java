@@ -0,0 +1,98 @@
+package com.hmall.api.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hmall.api.clients.ItemClient;
+import com.hmall.api.domain.dto.ItemDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ItemClient} 前的商品本地缓存。
+ * <p>
+ * 批量查询时只远程查询缓存中没有的商品；item-service发布的商品变更消息会让对应的缓存失效，
+ * 消息丢失或者与查询并发时可能短暂读到旧数据，最长不超过过期时间。
+ */
+@Slf4j
+public class ItemClientCache {
+
+    private final ItemClient itemClient;
+    private final Cache<Long, ItemDTO> cache;
+
+    public ItemClientCache(ItemClient itemClient, ItemCacheProperties properties) {
+        this.itemClient = itemClient;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 根据id批量查询商品，按ids的顺序返回，不存在的商品不包含在结果中
+     */
+    public List<ItemDTO> queryItemByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Collection<Long> keys = new LinkedHashSet<>(ids);
+        // 1.查询缓存
+        Map<Long, ItemDTO> cached = new HashMap<>(cache.getAllPresent(keys));
+        // 2.远程查询缺失的商品并放入缓存
+        if (cached.size() < keys.size()) {
+            List<Long> missing = new ArrayList<>(keys.size() - cached.size());
+            for (Long id : keys) {
+                if (!cached.containsKey(id)) {
+                    missing.add(id);
+                }
+            }
+            List<ItemDTO> items = itemClient.queryItemByIds(missing);
+            if (items != null) {
+                for (ItemDTO item : items) {
+                    cache.put(item.getId(), item);
+                    cached.put(item.getId(), item);
+                }
+            }
+        }
+        // 3.按请求的顺序返回
+        List<ItemDTO> result = new ArrayList<>(cached.size());
+        for (Long id : keys) {
+            ItemDTO item = cached.get(id);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 根据id查询商品
+     */
+    public ItemDTO queryItemById(Long id) {
+        // 商品不存在时返回null，不会被缓存
+        return cache.get(id, itemClient::queryItemById);
+    }
+
+    /**
+     * 商品变更时失效缓存
+     */
+    public void invalidate(Collection<Long> ids) {
+        cache.invalidateAll(ids);
+        log.debug("商品缓存失效，商品id：{}", ids);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public Cache<Long, ItemDTO> getCache() {
+        return cache;
+    }
+}
@@ -3,6 +3,7 @@ package com.hmall.api.clients;
 
 import com.hmall.api.domain.dto.ItemDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.StockResultDTO;
 import com.hmall.api.fallback.ItemClientFallbackFactory;
 import com.hmall.common.utils.BeanUtils;
 import org.springframework.cloud.openfeign.FeignClient;
@@ -10,18 +11,35 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @FeignClient(value = "item-service", fallbackFactory = ItemClientFallbackFactory.class)
 public interface ItemClient {
     @GetMapping("/items")
     List<ItemDTO> queryItemByIds(@RequestParam("ids") Collection<Long> ids);
 
+    /**
+     * 扣减库存，带订单id时按订单幂等，同一订单只扣减一次，已经归还过的订单不能再扣减
+     */
     @PutMapping("/items/stock/deduct")
-    void deductStock(@RequestBody List<OrderDetailDTO> items);
+    List<StockResultDTO> deductStock(@RequestParam(value = "orderId", required = false) Long orderId,
+                                     @RequestBody List<OrderDetailDTO> items);
 
+    /**
+     * 归还库存，带订单id时只归还该订单已经扣减的库存，并且只归还一次
+     */
     @PutMapping("/items/stock/restore")
-    void restoreStock(@RequestBody List<OrderDetailDTO> orderDetailDTOs);
+    List<StockResultDTO> restoreStock(@RequestParam(value = "orderId", required = false) Long orderId,
+                                      @RequestBody List<OrderDetailDTO> orderDetailDTOs);
 
-    @GetMapping("{id}")
+    /**
+     * 按订单批量归还库存，每个订单只归还该订单已经扣减的库存并且只归还一次
+     *
+     * @param details 订单id到订单明细的映射
+     */
+    @PutMapping("/items/stock/restore/orders")
+    List<StockResultDTO> restoreStockByOrders(@RequestBody Map<Long, List<OrderDetailDTO>> details);
+
+    @GetMapping("/items/{id}")
     ItemDTO queryItemById(@PathVariable("id") Long id);
 }
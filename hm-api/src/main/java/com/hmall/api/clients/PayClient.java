@@ -6,14 +6,28 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.Collection;
+import java.util.List;
 
 @FeignClient(value = "pay-service", fallbackFactory = PayClientFallback.class)
 public interface PayClient {
     @GetMapping("/pay-orders/biz/{id}")
     PayOrderDTO queryPayOrderByBizOrderNo(@PathVariable("id") Long id);
 
+    @GetMapping("/pay-orders/biz")
+    List<PayOrderDTO> queryPayOrdersByBizOrderNos(@RequestParam("ids") Collection<Long> ids);
+
     @PutMapping("/pay-orders/biz/{id}/{status}")
     void updateOrderStatusByOrderId(@PathVariable("id") Long id,
                                     @PathVariable("status") Integer status);
 
+    /**
+     * 批量修改业务订单的支付单状态
+     */
+    @PutMapping("/pay-orders/biz/status/{status}")
+    void updateOrderStatusByOrderIds(@RequestParam("ids") Collection<Long> ids,
+                                     @PathVariable("status") Integer status);
+
 }
@@ -0,0 +1,56 @@
+package com.hmall.api.config;
+
+import com.hmall.api.cache.ItemCacheProperties;
+import com.hmall.api.cache.ItemChangeListener;
+import com.hmall.api.cache.ItemClientCache;
+import com.hmall.api.clients.ItemClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 商品本地缓存，由使用ItemClientCache的服务以hm.item-cache.enabled=true开启，
+ * 并且只在服务通过@EnableFeignClients注册了ItemClient时生效，其他服务不会创建缓存和变更消息的队列
+ */
+@Configuration
+@AutoConfigureAfter(FeignAutoConfiguration.class)
+@ConditionalOnBean(ItemClient.class)
+@ConditionalOnProperty(prefix = "hm.item-cache", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ItemCacheProperties.class)
+public class ItemCacheConfig {
+
+    @Bean
+    public ItemClientCache itemClientCache(ItemClient itemClient, ItemCacheProperties properties) {
+        return new ItemClientCache(itemClient, properties);
+    }
+
+    @Configuration
+    @ConditionalOnClass(RabbitListener.class)
+    public static class ItemChangeListenerConfig {
+        @Bean
+        public ItemChangeListener itemChangeListener(ItemClientCache itemClientCache) {
+            return new ItemChangeListener(itemClientCache);
+        }
+    }
+
+    /**
+     * 引入了micrometer时暴露命中率等指标，名称为cache.gets{cache=item-client, result=hit|miss}等
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    public static class ItemCacheMetricsConfig {
+        public ItemCacheMetricsConfig(ItemClientCache itemClientCache, ObjectProvider<MeterRegistry> registries) {
+            registries.forEach(registry ->
+                    CaffeineCacheMetrics.monitor(registry, itemClientCache.getCache(), "item-client"));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.hmall.api.domain.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+@ApiModel(description = "单个商品的库存变更结果")
+@Data
+public class StockResultDTO {
+    public static final String SUCCESS = "SUCCESS";
+    public static final String INSUFFICIENT = "INSUFFICIENT";
+    public static final String MISSING = "MISSING";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String SKIPPED = "SKIPPED";
+
+    @ApiModelProperty("商品id")
+    private Long itemId;
+    @ApiModelProperty("变更数量")
+    private Integer num;
+    @ApiModelProperty("变更结果：SUCCESS-成功，INSUFFICIENT-库存不足，MISSING-商品不存在，CANCELLED-订单已归还库存，" +
+            "SKIPPED-订单没有扣减过或已经归还过，本次没有归还")
+    private String status;
+}
@@ -3,12 +3,14 @@ package com.hmall.api.fallback;
 import com.hmall.api.clients.ItemClient;
 import com.hmall.api.domain.dto.ItemDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.StockResultDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.openfeign.FallbackFactory;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class ItemClientFallbackFactory implements FallbackFactory<ItemClient> {
@@ -22,17 +24,23 @@ public class ItemClientFallbackFactory implements FallbackFactory<ItemClient> {
             }
 
             @Override
-            public void deductStock(List<OrderDetailDTO> items) {
+            public List<StockResultDTO> deductStock(Long orderId, List<OrderDetailDTO> items) {
                 log.error("扣减商品库存失败", cause);
                 throw new RuntimeException(cause);
             }
 
             @Override
-            public void restoreStock(List<OrderDetailDTO> orderDetailDTOs) {
+            public List<StockResultDTO> restoreStock(Long orderId, List<OrderDetailDTO> orderDetailDTOs) {
                 log.error("恢复商品库存失败", cause);
                 throw new RuntimeException(cause);
             }
 
+            @Override
+            public List<StockResultDTO> restoreStockByOrders(Map<Long, List<OrderDetailDTO>> details) {
+                log.error("按订单批量恢复商品库存失败", cause);
+                throw new RuntimeException(cause);
+            }
+
 
             @Override
             public ItemDTO queryItemById(Long id) {
@@ -6,6 +6,9 @@ import com.hmall.api.domain.dto.PayOrderDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.openfeign.FallbackFactory;
 
+import java.util.Collection;
+import java.util.List;
+
 
 @Slf4j
 public class PayClientFallback implements FallbackFactory<PayClient> {
@@ -18,10 +21,24 @@ public class PayClientFallback implements FallbackFactory<PayClient> {
                 return null;
             }
 
+            @Override
+            public List<PayOrderDTO> queryPayOrdersByBizOrderNos(Collection<Long> ids) {
+                log.error("queryPayOrdersByBizOrderNos失败: ", cause);
+                // 支付状态未知时不能当作未支付处理，否则会取消已支付的订单
+                throw new RuntimeException(cause);
+            }
+
             @Override
             public void updateOrderStatusByOrderId(Long id, Integer status) {
                 log.error("updateOrderStatusByOrderId失败: ", cause);
             }
+
+            @Override
+            public void updateOrderStatusByOrderIds(Collection<Long> ids, Integer status) {
+                log.error("updateOrderStatusByOrderIds失败: ", cause);
+                // 批量取消订单时需要知道支付单是否已关闭，失败时整批撤销
+                throw new RuntimeException(cause);
+            }
         };
     }
 
@@ -0,0 +1,59 @@
+package com.hmall.common.config;
+
+import com.hmall.common.outbox.OutboxProperties;
+import com.hmall.common.outbox.OutboxPublisher;
+import com.hmall.common.outbox.OutboxRelay;
+import com.hmall.common.outbox.OutboxStore;
+import com.hmall.common.outbox.SeataOutboxRelay;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnClass({RabbitTemplate.class, JdbcTemplate.class})
+@ConditionalOnProperty(prefix = "hm.outbox", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(OutboxProperties.class)
+public class OutboxConfig {
+
+    @Bean
+    public OutboxStore outboxStore(JdbcTemplate jdbcTemplate, OutboxProperties properties) {
+        return new OutboxStore(jdbcTemplate, properties.getTable());
+    }
+
+    @Bean
+    public OutboxPublisher outboxPublisher(OutboxStore outboxStore, MessageConverter messageConverter) {
+        return new OutboxPublisher(outboxStore, messageConverter);
+    }
+
+    /**
+     * 引入Seata时，发件箱行可能由AT模式的分支写入，本地提交后全局事务仍可能回滚，
+     * 中继在全局锁下读取，等全局事务结束后再投递
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.seata.rm.GlobalLockTemplate")
+    @ConditionalOnProperty(prefix = "hm.outbox", name = "global-lock", havingValue = "true", matchIfMissing = true)
+    static class SeataOutboxRelayConfiguration {
+        @Bean
+        public OutboxRelay seataOutboxRelay(OutboxStore outboxStore, RabbitTemplate rabbitTemplate,
+                                       PlatformTransactionManager transactionManager, OutboxProperties properties) {
+            return new SeataOutboxRelay(outboxStore, rabbitTemplate, new TransactionTemplate(transactionManager), properties);
+        }
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(OutboxRelay.class)
+    public OutboxRelay outboxRelay(OutboxStore outboxStore, RabbitTemplate rabbitTemplate,
+                                   PlatformTransactionManager transactionManager, OutboxProperties properties) {
+        return new OutboxRelay(outboxStore, rabbitTemplate, new TransactionTemplate(transactionManager), properties);
+    }
+}
@@ -0,0 +1,17 @@
+package com.hmall.common.constants;
+
+/**
+ * 商品变更事件，由item-service发布，消息体为变更的商品id集合
+ */
+public class ItemMqConstants {
+    public final static String EXCHANGE_NAME = "item.topic";
+    public final static String SAVE_KEY = "item.save";
+    public final static String UPDATE_KEY = "item.update";
+    public final static String STATUS_KEY = "item.status";
+    public final static String STOCK_KEY = "item.stock";
+    public final static String DELETE_KEY = "item.delete";
+    /**
+     * 订阅所有商品变更事件
+     */
+    public final static String ALL_KEY = "item.#";
+}
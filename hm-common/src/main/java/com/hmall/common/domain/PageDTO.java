@@ -20,6 +20,14 @@ public class PageDTO<T> {
     protected Long total;
     protected Long pages;
     protected List<T> list;
+    /**
+     * 游标分页时下一页的游标，没有下一页时为null
+     */
+    protected String next;
+
+    public PageDTO(Long total, Long pages, List<T> list) {
+        this(total, pages, list, null);
+    }
 
     public static <T> PageDTO<T> empty(Long total, Long pages) {
         return new PageDTO<>(total, pages, CollUtils.emptyList());
@@ -55,6 +63,10 @@ public class PageDTO<T> {
         return new PageDTO<>(page.getTotal(), page.getPages(), BeanUtils.copyList(page.getRecords(), clazz));
     }
 
+    public static <T, R> PageDTO<T> of(PageDTO<R> page, Class<T> clazz) {
+        return new PageDTO<>(page.getTotal(), page.getPages(), BeanUtils.copyList(page.getList(), clazz), page.getNext());
+    }
+
     public static <T, R> PageDTO<T> of(Page<R> page, Class<T> clazz, Convert<R, T> convert) {
         return new PageDTO<>(page.getTotal(), page.getPages(), BeanUtils.copyList(page.getRecords(), clazz, convert));
     }
@@ -27,13 +27,17 @@ public class PageQuery {
     private Boolean isAsc = true;
     @ApiModelProperty("排序方式")
     private String sortBy;
+    @ApiModelProperty("游标，传入上一页返回的next时按游标分页，忽略页码")
+    private String cursor;
+    @ApiModelProperty("是否查询总条数，默认查询，按游标翻页时不查询")
+    private Boolean searchCount = true;
 
     public int from(){
         return (pageNo - 1) * pageSize;
     }
 
     public <T> Page<T> toMpPage(OrderItem... orderItems) {
-        Page<T> page = new Page<>(pageNo, pageSize);
+        Page<T> page = new Page<>(pageNo, pageSize, !Boolean.FALSE.equals(searchCount));
         // 是否手动指定排序方式
         if (orderItems != null && orderItems.length > 0) {
             for (OrderItem orderItem : orderItems) {
@@ -56,13 +60,27 @@ public class PageQuery {
             sortBy = defaultSortBy;
             this.isAsc = isAsc;
         }
-        Page<T> page = new Page<>(pageNo, pageSize);
+        Page<T> page = new Page<>(pageNo, pageSize, !Boolean.FALSE.equals(searchCount));
         OrderItem orderItem = new OrderItem();
         orderItem.setAsc(this.isAsc);
         orderItem.setColumn(sortBy);
         page.addOrder(orderItem);
         return page;
     }
+    /**
+     * 没有指定排序字段时按(defaultSortBy, tieBreaker)排序，与游标分页的顺序一致，时间相同的记录在翻页时不会重复或遗漏
+     */
+    public <T> Page<T> toMpPage(String defaultSortBy, String tieBreaker, boolean isAsc) {
+        Page<T> page = toMpPage(defaultSortBy, isAsc);
+        if (defaultSortBy.equals(sortBy)) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setAsc(this.isAsc);
+            orderItem.setColumn(tieBreaker);
+            page.addOrder(orderItem);
+        }
+        return page;
+    }
+
     public <T> Page<T> toMpPageDefaultSortByCreateTimeDesc() {
         return toMpPage("create_time", false);
     }
@@ -0,0 +1,50 @@
+package com.hmall.common.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.hmall.common.exception.BizIllegalException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 发件箱消息头的序列化。
+ * <p>
+ * 使用独立的ObjectMapper并记录值的类型，投递时还原出与直接发送时相同类型的消息头，
+ * 不受应用中ObjectMapper配置（例如Long序列化为字符串）的影响。
+ */
+final class OutboxHeaders {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().activateDefaultTyping(
+            BasicPolymorphicTypeValidator.builder()
+                    .allowIfSubType("java.lang.")
+                    .allowIfSubType("java.util.")
+                    .allowIfSubType("java.math.")
+                    .build(),
+            ObjectMapper.DefaultTyping.EVERYTHING);
+
+    private OutboxHeaders() {
+    }
+
+    static String toJson(Map<String, Object> headers) {
+        try {
+            return MAPPER.writeValueAsString(headers);
+        } catch (JsonProcessingException e) {
+            throw new BizIllegalException("消息头序列化失败", e);
+        }
+    }
+
+    static Map<String, Object> fromJson(String headers) {
+        if (headers == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            return MAPPER.readValue(headers, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("发件箱消息头格式错误：" + headers, e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.hmall.common.outbox;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发件箱中的一条待投递消息，消息体是已经转换好的字节内容
+ */
+@Data
+@Accessors(chain = true)
+public class OutboxMessage {
+    private Long id;
+    private String exchange;
+    private String routingKey;
+    private String body;
+    private String contentType;
+    /**
+     * 消息头，JSON格式
+     */
+    private String headers;
+    /**
+     * 延迟投递的毫秒数，用于延迟交换机
+     */
+    private Integer delay;
+    private Integer retries;
+    private LocalDateTime createTime;
+}
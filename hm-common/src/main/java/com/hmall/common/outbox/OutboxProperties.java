@@ -0,0 +1,51 @@
+package com.hmall.common.outbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "hm.outbox")
+public class OutboxProperties {
+    /**
+     * 是否开启发件箱，开启后消息先写入本地事务中的outbox表，再由中继异步投递到RabbitMQ
+     */
+    private Boolean enabled = false;
+    /**
+     * 发件箱表名
+     */
+    private String table = "outbox_message";
+    /**
+     * 中继扫描待发送消息的间隔，单位毫秒
+     */
+    private Long pollInterval = 500L;
+    /**
+     * 每批最多投递的消息数量
+     */
+    private Integer batchSize = 100;
+    /**
+     * 消息写入后至少等待多久才投递，减少中继与还未结束的全局事务争用全局锁
+     */
+    private Duration minAge = Duration.ofSeconds(2);
+    /**
+     * 引入Seata时是否在全局锁下读取待投递的消息，AT模式的全局事务结束之前不会投递它写入的消息
+     */
+    private Boolean globalLock = true;
+    /**
+     * 等待publisher confirm的超时时间
+     */
+    private Duration confirmTimeout = Duration.ofSeconds(5);
+    /**
+     * 投递失败后的重试间隔，每次失败后线性增加
+     */
+    private Duration retryInterval = Duration.ofSeconds(10);
+    /**
+     * 最多投递失败的次数，达到后消息状态改为2不再投递，需要排查后手动改回0重新投递
+     */
+    private Integer maxRetries = 20;
+    /**
+     * 已投递消息的保留时间，超过后删除
+     */
+    private Duration retention = Duration.ofDays(1);
+}
@@ -0,0 +1,52 @@
+package com.hmall.common.outbox;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 通过发件箱发送消息，用法与RabbitTemplate.convertAndSend一致。
+ * <p>
+ * 消息在调用方当前的事务中写入outbox表，事务提交后才会被 {@link OutboxRelay} 投递，
+ * 回滚时消息随之删除，调用线程也不再等待broker。
+ */
+public class OutboxPublisher {
+
+    private final OutboxStore outboxStore;
+    private final MessageConverter messageConverter;
+
+    public OutboxPublisher(OutboxStore outboxStore, MessageConverter messageConverter) {
+        this.outboxStore = outboxStore;
+        this.messageConverter = messageConverter;
+    }
+
+    public void send(String exchange, String routingKey, Object payload) {
+        send(exchange, routingKey, payload, null);
+    }
+
+    public void send(String exchange, String routingKey, Object payload, MessagePostProcessor postProcessor) {
+        // 1.与直接发送一样，先由MessageConverter转换，再执行后置处理设置消息头
+        Message message = messageConverter.toMessage(payload, new MessageProperties());
+        if (postProcessor != null) {
+            message = postProcessor.postProcessMessage(message);
+        }
+        MessageProperties properties = message.getMessageProperties();
+        // 2.延迟时间单独保存，投递时重新设置
+        Integer delay = properties.getDelay();
+        Map<String, Object> headers = new HashMap<>(properties.getHeaders());
+        headers.remove(MessageProperties.X_DELAY);
+        // 3.写入发件箱
+        outboxStore.insert(new OutboxMessage()
+                .setExchange(exchange)
+                .setRoutingKey(routingKey)
+                .setBody(new String(message.getBody(), StandardCharsets.UTF_8))
+                .setContentType(properties.getContentType())
+                .setHeaders(OutboxHeaders.toJson(headers))
+                .setDelay(delay));
+    }
+}
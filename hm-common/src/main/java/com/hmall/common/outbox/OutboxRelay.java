@@ -0,0 +1,136 @@
+package com.hmall.common.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 定时把发件箱中的消息批量投递到RabbitMQ。
+ * <p>
+ * 每批在一个事务中锁定消息，全部发送后等待publisher confirm，确认后再标记为已投递，
+ * 确认之前宕机的消息会再次投递，消费者需要保证幂等。需要开启spring.rabbitmq.publisher-confirm-type=simple。
+ * 引入Seata时使用 {@link SeataOutboxRelay}，在全局锁下读取消息。
+ */
+@Slf4j
+public class OutboxRelay {
+
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final OutboxStore outboxStore;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties properties;
+
+    public OutboxRelay(OutboxStore outboxStore, RabbitTemplate rabbitTemplate, TransactionTemplate transactionTemplate,
+                       OutboxProperties properties) {
+        this.outboxStore = outboxStore;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+    }
+
+    @Scheduled(fixedDelayString = "${hm.outbox.poll-interval:500}")
+    public void relay() {
+        Integer sent;
+        do {
+            sent = relayInTransaction();
+            // 取满一批说明还有积压，继续投递
+        } while (sent != null && sent >= properties.getBatchSize());
+    }
+
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void purge() {
+        LocalDateTime createdBefore = LocalDateTime.now().minus(properties.getRetention());
+        int purged;
+        do {
+            purged = outboxStore.purgeSent(createdBefore, PURGE_BATCH_SIZE);
+        } while (purged >= PURGE_BATCH_SIZE);
+    }
+
+    /**
+     * 在一个本地事务中投递一批消息
+     *
+     * @return 本批投递的数量，有失败时返回0
+     */
+    protected Integer relayInTransaction() {
+        return transactionTemplate.execute(status -> relayBatch());
+    }
+
+    /**
+     * 锁定一批待投递的消息，多个实例之间跳过已被锁定的行
+     */
+    protected List<OutboxMessage> lockPending(int limit, LocalDateTime createdBefore) {
+        return outboxStore.lockPending(limit, createdBefore, true);
+    }
+
+    private int relayBatch() {
+        LocalDateTime createdBefore = LocalDateTime.now().minus(properties.getMinAge());
+        List<OutboxMessage> batch = lockPending(properties.getBatchSize(), createdBefore);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Long> sent = new ArrayList<>(batch.size());
+        List<Long> failed = new ArrayList<>();
+        try {
+            publish(batch);
+            batch.forEach(message -> sent.add(message.getId()));
+        } catch (Exception e) {
+            // 整批失败时逐条重试，只推迟真正失败的消息
+            log.warn("发件箱批量投递失败，逐条重试，数量：{}", batch.size(), e);
+            for (OutboxMessage message : batch) {
+                try {
+                    publish(Collections.singletonList(message));
+                    sent.add(message.getId());
+                } catch (Exception ex) {
+                    failed.add(message.getId());
+                    log.error("发件箱消息投递失败，id：{}，exchange：{}，routingKey：{}，已重试{}次",
+                            message.getId(), message.getExchange(), message.getRoutingKey(), message.getRetries(), ex);
+                    if (message.getRetries() + 1 >= properties.getMaxRetries()) {
+                        log.error("发件箱消息超过最大重试次数，停止投递，id：{}", message.getId());
+                    }
+                }
+            }
+        }
+        if (!sent.isEmpty()) {
+            outboxStore.markSent(sent);
+        }
+        if (!failed.isEmpty()) {
+            outboxStore.markFailed(failed, properties.getRetryInterval().getSeconds(), properties.getMaxRetries());
+        }
+        log.debug("发件箱投递完成，成功：{}，失败：{}", sent.size(), failed.size());
+        return failed.isEmpty() ? batch.size() : 0;
+    }
+
+    /**
+     * 在同一个channel上发送一批消息并等待全部确认，任意一条被拒绝或超时都会抛出异常
+     */
+    private void publish(List<OutboxMessage> batch) {
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxMessage message : batch) {
+                operations.send(message.getExchange(), message.getRoutingKey(), toMessage(message));
+            }
+            operations.waitForConfirmsOrDie(properties.getConfirmTimeout().toMillis());
+            return null;
+        });
+    }
+
+    static Message toMessage(OutboxMessage outboxMessage) {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(outboxMessage.getContentType());
+        messageProperties.setContentEncoding(StandardCharsets.UTF_8.name());
+        OutboxHeaders.fromJson(outboxMessage.getHeaders()).forEach(messageProperties::setHeader);
+        if (outboxMessage.getDelay() != null) {
+            messageProperties.setDelay(outboxMessage.getDelay());
+        }
+        return new Message(outboxMessage.getBody().getBytes(StandardCharsets.UTF_8), messageProperties);
+    }
+}
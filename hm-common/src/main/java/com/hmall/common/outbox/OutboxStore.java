@@ -0,0 +1,106 @@
+package com.hmall.common.outbox;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 发件箱表的读写，使用JdbcTemplate以便加入调用方当前的事务。
+ * <pre>
+ * CREATE TABLE outbox_message (
+ *   id              BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+ *   exchange        VARCHAR(128) NOT NULL,
+ *   routing_key     VARCHAR(128) NOT NULL,
+ *   body            TEXT         NOT NULL,
+ *   content_type    VARCHAR(64),
+ *   headers         VARCHAR(1024),
+ *   delay           INT,
+ *   status          TINYINT      NOT NULL DEFAULT 0 COMMENT '0-待投递，1-已投递，2-超过重试次数停止投递',
+ *   retries         INT          NOT NULL DEFAULT 0,
+ *   next_retry_time DATETIME     NOT NULL,
+ *   create_time     DATETIME     NOT NULL,
+ *   KEY idx_status_next_retry (status, next_retry_time)
+ * );
+ * </pre>
+ */
+public class OutboxStore {
+
+    private static final RowMapper<OutboxMessage> ROW_MAPPER = (rs, i) -> new OutboxMessage()
+            .setId(rs.getLong("id"))
+            .setExchange(rs.getString("exchange"))
+            .setRoutingKey(rs.getString("routing_key"))
+            .setBody(rs.getString("body"))
+            .setContentType(rs.getString("content_type"))
+            .setHeaders(rs.getString("headers"))
+            .setDelay((Integer) rs.getObject("delay"))
+            .setRetries(rs.getInt("retries"))
+            .setCreateTime(rs.getTimestamp("create_time").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+
+    public OutboxStore(JdbcTemplate jdbcTemplate, String table) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.table = table;
+    }
+
+    public void insert(OutboxMessage message) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO " + table +
+                        " (exchange, routing_key, body, content_type, headers, delay, status, retries, next_retry_time, create_time)" +
+                        " VALUES (?, ?, ?, ?, ?, ?, 0, 0, ?, ?)",
+                message.getExchange(), message.getRoutingKey(), message.getBody(), message.getContentType(),
+                message.getHeaders(), message.getDelay(), Timestamp.valueOf(now), Timestamp.valueOf(now));
+    }
+
+    /**
+     * 锁定一批到期的待投递消息，必须在事务中调用
+     *
+     * @param createdBefore 只取在此之前写入的消息
+     * @param skipLocked    是否跳过其他实例已经锁定的行，Seata无法解析SKIP LOCKED，在全局锁下读取时需要关闭
+     */
+    public List<OutboxMessage> lockPending(int limit, LocalDateTime createdBefore, boolean skipLocked) {
+        return jdbcTemplate.query("SELECT id, exchange, routing_key, body, content_type, headers, delay, retries, create_time" +
+                        " FROM " + table + " WHERE status = 0 AND next_retry_time <= ? AND create_time <= ?" +
+                        " ORDER BY id LIMIT ? FOR UPDATE" + (skipLocked ? " SKIP LOCKED" : ""),
+                ROW_MAPPER, Timestamp.valueOf(LocalDateTime.now()), Timestamp.valueOf(createdBefore), limit);
+    }
+
+    public void markSent(Collection<Long> ids) {
+        jdbcTemplate.update("UPDATE " + table + " SET status = 1 WHERE id IN (" + placeholders(ids) + ")", ids.toArray());
+    }
+
+    /**
+     * 记录投递失败，重试间隔随失败次数线性增加，失败次数达到maxRetries后停止投递，留待人工处理。
+     * MySQL按从左到右的顺序执行SET，后面的表达式读到的retries已经加1
+     */
+    public void markFailed(Collection<Long> ids, long retryIntervalSeconds, int maxRetries) {
+        Object[] args = new Object[ids.size() + 2];
+        args[0] = retryIntervalSeconds;
+        args[1] = maxRetries;
+        System.arraycopy(ids.toArray(), 0, args, 2, ids.size());
+        jdbcTemplate.update("UPDATE " + table + " SET retries = retries + 1," +
+                " next_retry_time = DATE_ADD(NOW(), INTERVAL retries * ? SECOND)," +
+                " status = IF(retries >= ?, 2, status)" +
+                " WHERE id IN (" + placeholders(ids) + ")", args);
+    }
+
+    /**
+     * 删除一批已投递且早于指定时间的消息
+     *
+     * @return 删除的数量
+     */
+    public int purgeSent(LocalDateTime createdBefore, int limit) {
+        return jdbcTemplate.update("DELETE FROM " + table + " WHERE status = 1 AND create_time < ? LIMIT ?",
+                Timestamp.valueOf(createdBefore), limit);
+    }
+
+    private static String placeholders(Collection<?> values) {
+        return values.stream().map(v -> "?").collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,68 @@
+package com.hmall.common.outbox;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import io.seata.core.model.GlobalLockConfig;
+import io.seata.rm.GlobalLockExecutor;
+import io.seata.rm.GlobalLockTemplate;
+import io.seata.rm.datasource.exec.LockConflictException;
+import io.seata.rm.datasource.exec.LockWaitTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 在Seata全局锁下投递发件箱消息。
+ * <p>
+ * AT模式的分支写入发件箱后先在本地提交，全局事务结束之前行上一直持有全局锁。
+ * 中继以 {@code SELECT ... FOR UPDATE} 读取并检查全局锁，还未结束的全局事务写入的消息不会被投递，
+ * 全局回滚时由undo log删除，不会出现消息已投递、undo却因为行已被修改而无法回滚的情况。
+ * 全局锁冲突时按Seata的client.rm.lock配置重试，仍然冲突则结束本轮，下一轮再投递。
+ */
+@Slf4j
+public class SeataOutboxRelay extends OutboxRelay {
+
+    private final GlobalLockTemplate globalLockTemplate = new GlobalLockTemplate();
+    private final OutboxStore outboxStore;
+
+    public SeataOutboxRelay(OutboxStore outboxStore, RabbitTemplate rabbitTemplate,
+                            TransactionTemplate transactionTemplate, OutboxProperties properties) {
+        super(outboxStore, rabbitTemplate, transactionTemplate, properties);
+        this.outboxStore = outboxStore;
+    }
+
+    @Override
+    protected Integer relayInTransaction() {
+        try {
+            return (Integer) globalLockTemplate.execute(new GlobalLockExecutor() {
+                @Override
+                public Object execute() {
+                    return SeataOutboxRelay.super.relayInTransaction();
+                }
+
+                @Override
+                public GlobalLockConfig getGlobalLockConfig() {
+                    // 使用Seata客户端的全局锁重试配置
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            if (ExceptionUtil.isCausedBy(e, LockConflictException.class, LockWaitTimeoutException.class)) {
+                log.debug("发件箱消息仍被全局事务锁定，下一轮再投递");
+                return 0;
+            }
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("发件箱投递失败", e);
+        }
+    }
+
+    @Override
+    protected List<OutboxMessage> lockPending(int limit, LocalDateTime createdBefore) {
+        return outboxStore.lockPending(limit, createdBefore, false);
+    }
+}
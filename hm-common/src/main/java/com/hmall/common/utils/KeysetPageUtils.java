@@ -0,0 +1,119 @@
+package com.hmall.common.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmall.common.domain.PageDTO;
+import com.hmall.common.domain.PageQuery;
+import com.hmall.common.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 基于(时间, id)的游标分页。
+ * <p>
+ * 以上一页最后一条记录的时间和id作为条件向后查找，不使用LIMIT offset，深度翻页时也只扫描一页的数据，
+ * 需要在(时间, id)上建立联合索引。游标对前端是不透明的字符串，只能原样传回。
+ * 时间为null的记录与MySQL的排序一致，升序时排在最前，降序时排在最后。
+ * 不带游标的偏移分页应使用 {@link PageQuery#toMpPage(String, String, boolean)}，与游标分页的顺序保持一致。
+ */
+public class KeysetPageUtils {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * 是否应该使用游标分页：传了游标，或者使用默认排序查询第一页（第一页的结果会带上next）
+     */
+    public static boolean isKeyset(PageQuery query) {
+        return StrUtil.isNotBlank(query.getCursor())
+                || (StrUtil.isBlank(query.getSortBy()) && query.getPageNo() == 1);
+    }
+
+    /**
+     * 游标分页查询
+     *
+     * @param service    要查询的实体的service
+     * @param query      分页参数，只使用cursor、pageSize和searchCount
+     * @param timeColumn 排序的时间字段
+     * @param idColumn   主键字段，时间相同时用于保证顺序稳定
+     * @param isAsc      是否升序
+     */
+    public static <T> PageDTO<T> page(IService<T> service, PageQuery query,
+                                      SFunction<T, LocalDateTime> timeColumn, SFunction<T, Long> idColumn,
+                                      boolean isAsc) {
+        int size = query.getPageSize();
+        // 1.按游标向后查找，多查一条用于判断是否还有下一页
+        LambdaQueryChainWrapper<T> wrapper = service.lambdaQuery();
+        boolean hasCursor = StrUtil.isNotBlank(query.getCursor());
+        if (hasCursor) {
+            Cursor cursor = decode(query.getCursor());
+            if (cursor.time == null) {
+                // 时间为null的记录之间按id排序，升序时之后还有全部非null的记录
+                if (isAsc) {
+                    wrapper.and(w -> w.isNotNull(timeColumn)
+                            .or(o -> o.isNull(timeColumn).gt(idColumn, cursor.id)));
+                } else {
+                    wrapper.and(w -> w.isNull(timeColumn).lt(idColumn, cursor.id));
+                }
+            } else if (isAsc) {
+                wrapper.and(w -> w.gt(timeColumn, cursor.time)
+                        .or(o -> o.eq(timeColumn, cursor.time).gt(idColumn, cursor.id)));
+            } else {
+                // 降序时之后还有时间为null的记录
+                wrapper.and(w -> w.lt(timeColumn, cursor.time)
+                        .or(o -> o.eq(timeColumn, cursor.time).lt(idColumn, cursor.id))
+                        .or(o -> o.isNull(timeColumn)));
+            }
+        }
+        List<T> list = wrapper.orderBy(true, isAsc, timeColumn)
+                .orderBy(true, isAsc, idColumn)
+                .last("LIMIT " + (size + 1))
+                .list();
+        // 2.生成下一页的游标
+        String next = null;
+        if (list.size() > size) {
+            list = list.subList(0, size);
+            T last = list.get(size - 1);
+            next = encode(timeColumn.apply(last), idColumn.apply(last));
+        }
+        // 3.按需查询总条数，翻页时总条数已经在第一页返回，不再重复COUNT
+        Long total = null;
+        Long pages = null;
+        if (!hasCursor && !Boolean.FALSE.equals(query.getSearchCount())) {
+            total = service.count();
+            pages = (total + size - 1) / size;
+        }
+        return new PageDTO<>(total, pages, list, next);
+    }
+
+    private static String encode(LocalDateTime time, Long id) {
+        // 时间为null时时间部分为空
+        String raw = (time == null ? "" : time.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int i = raw.lastIndexOf(SEPARATOR);
+            String time = raw.substring(0, i);
+            return new Cursor(time.isEmpty() ? null : LocalDateTime.parse(time), Long.valueOf(raw.substring(i + 1)));
+        } catch (Exception e) {
+            throw new BadRequestException("非法的分页游标", e);
+        }
+    }
+
+    private static class Cursor {
+        private final LocalDateTime time;
+        private final Long id;
+
+        private Cursor(LocalDateTime time, Long id) {
+            this.time = time;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.hmall.common.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxRoundTripTest {
+
+    private final List<OutboxMessage> stored = new ArrayList<>();
+
+    @Test
+    void testHeadersKeepTypes() {
+        // 与JsonConfig一致，应用的ObjectMapper把Long写成字符串
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new SimpleModule().addSerializer(Long.class, ToStringSerializer.instance));
+        OutboxStore store = new OutboxStore(null, "outbox_message") {
+            @Override
+            public void insert(OutboxMessage message) {
+                stored.add(message);
+            }
+        };
+        OutboxPublisher publisher = new OutboxPublisher(store, new Jackson2JsonMessageConverter(objectMapper));
+
+        publisher.send("trade.topic", "order.create", Set.of(1L, 2L), message -> {
+            message.getMessageProperties().setHeader("user_INFO", 1L);
+            message.getMessageProperties().setHeader("retry", 3);
+            message.getMessageProperties().setHeader("source", "trade");
+            message.getMessageProperties().setDelay(10000);
+            return message;
+        });
+
+        assertEquals(1, stored.size());
+        Message message = OutboxRelay.toMessage(stored.get(0));
+        MessageProperties properties = message.getMessageProperties();
+        Map<String, Object> headers = properties.getHeaders();
+        assertEquals(1L, headers.get("user_INFO"));
+        assertEquals(3, headers.get("retry"));
+        assertEquals("trade", headers.get("source"));
+        assertEquals(10000, properties.getDelay());
+        assertEquals(MessageProperties.CONTENT_TYPE_JSON, properties.getContentType());
+    }
+}
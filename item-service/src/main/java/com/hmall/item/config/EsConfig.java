@@ -0,0 +1,17 @@
+package com.hmall.item.config;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EsConfig {
+
+    @Bean(destroyMethod = "close")
+    public RestHighLevelClient restHighLevelClient(EsProperties esProperties) {
+        HttpHost[] hosts = esProperties.getHosts().stream().map(HttpHost::create).toArray(HttpHost[]::new);
+        return new RestHighLevelClient(RestClient.builder(hosts));
+    }
+}
@@ -0,0 +1,58 @@
+package com.hmall.item.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.es")
+public class EsProperties {
+    /**
+     * elasticsearch地址，例如http://127.0.0.1:9200
+     */
+    private List<String> hosts = List.of("http://127.0.0.1:9200");
+    /**
+     * 索引重建的配置
+     */
+    private Reindex reindex = new Reindex();
+
+    @Data
+    public static class Reindex {
+        /**
+         * 每次从数据库扫描的商品数量
+         */
+        private Integer scanSize = 1000;
+        /**
+         * 单个bulk请求最多包含的文档数
+         */
+        private Integer bulkActions = 1000;
+        /**
+         * 单个bulk请求的最大字节数，单位MB
+         */
+        private Long bulkSizeMb = 5L;
+        /**
+         * 同时在途的bulk请求数量，达到上限时扫描线程会阻塞
+         */
+        private Integer concurrentRequests = 4;
+        /**
+         * bulk被拒绝（429）时的首次重试间隔，之后指数退避
+         */
+        private Duration backoffInitialDelay = Duration.ofMillis(100);
+        /**
+         * bulk被拒绝时的最大重试次数
+         */
+        private Integer backoffMaxRetries = 8;
+        /**
+         * 等待所有bulk请求完成的最长时间
+         */
+        private Duration awaitTimeout = Duration.ofMinutes(10);
+        /**
+         * 切换别名前重放扫描期间变更的最大轮数，每轮重放上一轮期间到达的变更
+         */
+        private Integer maxCatchUpRounds = 5;
+    }
+}
@@ -0,0 +1,27 @@
+package com.hmall.item.config;
+
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.stock.StockLoader;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@EnableScheduling
+public class StockLedgerConfig {
+
+    @Bean
+    public StockLoader stockLoader(ItemMapper itemMapper) {
+        return itemIds -> {
+            Map<Long, Integer> stocks = new HashMap<>(itemIds.size());
+            for (Item item : itemMapper.selectBatchIds(itemIds)) {
+                stocks.put(item.getId(), item.getStock() == null ? 0 : item.getStock());
+            }
+            return stocks;
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package com.hmall.item.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.stock")
+public class StockProperties {
+    /**
+     * 库存扣减模式：db-直接扣减数据库，redis-基于Redis预扣减，local-基于本地内存预扣减（离线测试用）
+     */
+    private String ledger = "db";
+    /**
+     * 预扣减结果同步到数据库的间隔，单位毫秒
+     */
+    private Long syncInterval = 1000L;
+    /**
+     * 一轮同步的最长持有时间，超时后其他实例可以重新领取，需要大于一轮写库的耗时
+     */
+    private Duration syncLockTtl = Duration.ofSeconds(30);
+    /**
+     * 按订单记录扣减和归还状态的保留时间，需要覆盖订单从下单到取消的最长时间
+     */
+    private Duration orderTtl = Duration.ofDays(7);
+    /**
+     * Redis中库存相关key的前缀
+     */
+    private String keyPrefix = "hm:stock:";
+}
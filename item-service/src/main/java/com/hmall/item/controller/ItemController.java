@@ -3,19 +3,28 @@ package com.hmall.item.controller;
 
 import cn.hutool.core.thread.ThreadUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmall.common.constants.ItemMqConstants;
 import com.hmall.common.domain.PageDTO;
 import com.hmall.common.domain.PageQuery;
 import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.KeysetPageUtils;
 import com.hmall.item.domain.dto.ItemDTO;
 import com.hmall.item.domain.dto.OrderDetailDTO;
+import com.hmall.item.domain.dto.StockResultDTO;
 import com.hmall.item.domain.po.Item;
+import com.hmall.item.enums.StockStatus;
+import com.hmall.item.mq.ItemChangePublisher;
 import com.hmall.item.service.IItemService;
+import com.hmall.item.stock.StockLedger;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Api(tags = "商品管理相关接口")
 @RestController
@@ -24,12 +33,19 @@ import java.util.List;
 public class ItemController {
 
     private final IItemService itemService;
+    private final ItemChangePublisher itemChangePublisher;
+    private final ObjectProvider<StockLedger> stockLedgerProvider;
 
     @ApiOperation("分页查询商品")
     @GetMapping("/page")
     public PageDTO<ItemDTO> queryItemByPage(PageQuery query) {
-        // 1.分页查询
-        Page<Item> result = itemService.page(query.toMpPage("update_time", false));
+        // 默认排序时按(update_time, id)游标分页，避免深度翻页时的LIMIT offset
+        if (KeysetPageUtils.isKeyset(query)) {
+            PageDTO<Item> result = KeysetPageUtils.page(itemService, query, Item::getUpdateTime, Item::getId, false);
+            return PageDTO.of(result, ItemDTO.class);
+        }
+        // 1.分页查询，默认排序时与游标分页一样按(update_time, id)排序
+        Page<Item> result = itemService.page(query.toMpPage("update_time", "id", false));
         // 2.封装并返回
         return PageDTO.of(result, ItemDTO.class);
     }
@@ -51,7 +67,9 @@ public class ItemController {
     @PostMapping
     public void saveItem(@RequestBody ItemDTO item) {
         // 新增
-        itemService.save(BeanUtils.copyBean(item, Item.class));
+        Item po = BeanUtils.copyBean(item, Item.class);
+        itemService.save(po);
+        itemChangePublisher.publish(ItemMqConstants.SAVE_KEY, List.of(po.getId()));
     }
 
     @ApiOperation("更新商品状态")
@@ -61,6 +79,7 @@ public class ItemController {
         item.setId(id);
         item.setStatus(status);
         itemService.updateById(item);
+        itemChangePublisher.publish(ItemMqConstants.STATUS_KEY, List.of(id));
     }
 
     @ApiOperation("更新商品")
@@ -69,23 +88,66 @@ public class ItemController {
         // 不允许修改商品状态，所以强制设置为null，更新时，就会忽略该字段
         item.setStatus(null);
         // 更新
-        itemService.updateById(BeanUtils.copyBean(item, Item.class));
+        itemService.updateItem(BeanUtils.copyBean(item, Item.class));
+        itemChangePublisher.publish(ItemMqConstants.UPDATE_KEY, List.of(item.getId()));
     }
 
     @ApiOperation("根据id删除商品")
     @DeleteMapping("{id}")
     public void deleteItemById(@PathVariable("id") Long id) {
         itemService.removeById(id);
+        itemChangePublisher.publish(ItemMqConstants.DELETE_KEY, List.of(id));
     }
 
     @ApiOperation("批量扣减库存")
     @PutMapping("/stock/deduct")
-    public void deductStock(@RequestBody List<OrderDetailDTO> items) {
-        itemService.deductStock(items);
+    public List<StockResultDTO> deductStock(@RequestParam(value = "orderId", required = false) Long orderId,
+                                            @RequestBody List<OrderDetailDTO> items) {
+        List<StockResultDTO> results = itemService.deductStock(orderId, items);
+        // 扣减失败时库存没有变化，不需要通知
+        if (results.stream().allMatch(r -> r.getStatus() == StockStatus.SUCCESS)) {
+            publishStockChanged(itemIds(results));
+        }
+        return results;
     }
 
+    @ApiOperation("批量恢复库存")
     @PutMapping("/stock/restore")
-    public void restoreStock(@RequestBody List<OrderDetailDTO> orderDetailDTOs) {
-        itemService.restoreStock(orderDetailDTOs);
+    public List<StockResultDTO> restoreStock(@RequestParam(value = "orderId", required = false) Long orderId,
+                                             @RequestBody List<OrderDetailDTO> orderDetailDTOs) {
+        List<StockResultDTO> results = itemService.restoreStock(orderId, orderDetailDTOs);
+        publishStockChanged(restoredItemIds(results));
+        return results;
+    }
+
+    @ApiOperation("按订单批量恢复库存")
+    @PutMapping("/stock/restore/orders")
+    public List<StockResultDTO> restoreStockByOrders(@RequestBody Map<Long, List<OrderDetailDTO>> details) {
+        List<StockResultDTO> results = itemService.restoreStockByOrders(details);
+        publishStockChanged(restoredItemIds(results));
+        return results;
+    }
+
+    /**
+     * 通知数据库库存已经变化。预扣减模式下此时数据库还没有变化，由StockSyncTask在同步后通知
+     */
+    private void publishStockChanged(List<Long> itemIds) {
+        if (stockLedgerProvider.getIfAvailable() == null) {
+            itemChangePublisher.publish(ItemMqConstants.STOCK_KEY, itemIds);
+        }
+    }
+
+    private static List<Long> itemIds(List<StockResultDTO> results) {
+        return results.stream().map(StockResultDTO::getItemId).collect(Collectors.toList());
+    }
+
+    /**
+     * 只通知库存实际发生变化的商品
+     */
+    private static List<Long> restoredItemIds(List<StockResultDTO> results) {
+        return results.stream()
+                .filter(r -> r.getStatus() == StockStatus.SUCCESS)
+                .map(StockResultDTO::getItemId)
+                .collect(Collectors.toList());
     }
 }
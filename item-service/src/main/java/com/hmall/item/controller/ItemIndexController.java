@@ -0,0 +1,37 @@
+package com.hmall.item.controller;
+
+import com.hmall.item.domain.dto.ReindexStatusDTO;
+import com.hmall.item.es.ItemReindexer;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 商品索引的运维接口。
+ * <p>
+ * 路径不在/items下，网关没有到这里的路由，也不在免登录的路径中，只能在内网直接访问item-service。
+ */
+@Api(tags = "商品索引运维接口")
+@RestController
+@RequestMapping("/admin/items/index")
+@RequiredArgsConstructor
+public class ItemIndexController {
+
+    private final ItemReindexer itemReindexer;
+
+    @ApiOperation("开始重建商品索引，在后台执行")
+    @PostMapping("/rebuild")
+    public ReindexStatusDTO rebuildIndex() {
+        return itemReindexer.start();
+    }
+
+    @ApiOperation("查询商品索引重建状态")
+    @GetMapping("/rebuild")
+    public ReindexStatusDTO rebuildStatus() {
+        return itemReindexer.status();
+    }
+}
@@ -0,0 +1,24 @@
+package com.hmall.item.domain.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+@Data
+@ApiModel(description = "索引重建结果")
+public class ReindexResultDTO {
+    @ApiModelProperty("新建的索引名称")
+    private String index;
+    @ApiModelProperty("写入成功的文档数")
+    private Long docs;
+    @ApiModelProperty("写入失败的文档数")
+    private Long failures;
+    @ApiModelProperty("发送的bulk请求字节数")
+    private Long bytes;
+    @ApiModelProperty("重放的重建期间变更的商品数")
+    private Long replayed;
+    @ApiModelProperty("耗时，单位毫秒")
+    private Long tookMillis;
+    @ApiModelProperty("吞吐量，每秒写入的文档数")
+    private Long docsPerSecond;
+}
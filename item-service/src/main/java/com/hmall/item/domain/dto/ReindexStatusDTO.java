@@ -0,0 +1,27 @@
+package com.hmall.item.domain.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@ApiModel(description = "索引重建状态")
+public class ReindexStatusDTO {
+    public static final String IDLE = "IDLE";
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+
+    @ApiModelProperty("状态：IDLE-没有执行过，RUNNING-执行中，SUCCEEDED-成功，FAILED-失败")
+    private String state;
+    @ApiModelProperty("开始时间")
+    private LocalDateTime startTime;
+    @ApiModelProperty("结束时间")
+    private LocalDateTime endTime;
+    @ApiModelProperty("重建结果，成功时才有")
+    private ReindexResultDTO result;
+    @ApiModelProperty("失败原因")
+    private String error;
+}
@@ -0,0 +1,21 @@
+package com.hmall.item.domain.dto;
+
+import com.hmall.item.enums.StockStatus;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor(staticName = "of")
+@ApiModel(description = "单个商品的库存变更结果")
+public class StockResultDTO {
+    @ApiModelProperty("商品id")
+    private Long itemId;
+    @ApiModelProperty("变更数量")
+    private Integer num;
+    @ApiModelProperty("变更结果")
+    private StockStatus status;
+}
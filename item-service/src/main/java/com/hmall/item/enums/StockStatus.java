@@ -0,0 +1,20 @@
+package com.hmall.item.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum StockStatus {
+    SUCCESS(1, "库存变更成功"),
+    INSUFFICIENT(2, "库存不足"),
+    MISSING(3, "商品不存在"),
+    CANCELLED(4, "订单已归还库存"),
+    SKIPPED(5, "订单没有需要归还的库存"),
+    ;
+    private final int value;
+    private final String desc;
+
+    StockStatus(int value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,89 @@
+package com.hmall.item.es;
+
+import com.hmall.common.constants.ItemMqConstants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录索引重建期间发生变更的商品。
+ * <p>
+ * 重建开始前临时声明一个匿名的自动删除队列并绑定到商品变更交换机，所有item-service实例发布的变更都会被记录下来，
+ * 包括删除和下架；重建结束后停止监听，队列随之删除。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemChangeRecorder {
+
+    private final ConnectionFactory connectionFactory;
+    private final AmqpAdmin amqpAdmin;
+    private final MessageConverter messageConverter;
+
+    /**
+     * 开始记录，返回的Recording需要在重建结束后关闭
+     */
+    public Recording start() {
+        Queue queue = new AnonymousQueue();
+        TopicExchange exchange = new TopicExchange(ItemMqConstants.EXCHANGE_NAME);
+        amqpAdmin.declareExchange(exchange);
+        amqpAdmin.declareQueue(queue);
+        amqpAdmin.declareBinding(BindingBuilder.bind(queue).to(exchange).with(ItemMqConstants.ALL_KEY));
+
+        Recording recording = new Recording();
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueueNames(queue.getName());
+        container.setMessageListener(message -> recording.record(messageConverter.fromMessage(message)));
+        container.start();
+        recording.container = container;
+        log.debug("开始记录商品变更，队列：{}", queue.getName());
+        return recording;
+    }
+
+    public static class Recording implements AutoCloseable {
+        private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+        private SimpleMessageListenerContainer container;
+
+        private void record(Object body) {
+            if (!(body instanceof Collection)) {
+                return;
+            }
+            for (Object id : (Collection<?>) body) {
+                // 消息体中的id可能被解析为Integer、Long或字符串
+                changed.add(Long.valueOf(id.toString()));
+            }
+        }
+
+        /**
+         * 取出目前记录的商品id，之后的变更留到下一次取出
+         */
+        public List<Long> drain() {
+            List<Long> itemIds = new ArrayList<>(changed.size());
+            for (Iterator<Long> it = changed.iterator(); it.hasNext(); ) {
+                itemIds.add(it.next());
+                it.remove();
+            }
+            return itemIds;
+        }
+
+        @Override
+        public void close() {
+            container.stop();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.hmall.item.es;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.item.config.EsProperties;
+import com.hmall.item.domain.dto.ReindexResultDTO;
+import com.hmall.item.domain.dto.ReindexStatusDTO;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.ItemDoc;
+import com.hmall.item.service.IItemService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 商品索引重建。
+ * <p>
+ * 按id游标扫描item表，扫描线程只负责把文档放进 {@link BulkProcessor}，由它按文档数或字节数切分bulk请求，
+ * 最多同时发送concurrentRequests个请求，在途请求达到上限时扫描线程阻塞；bulk被拒绝（429）时按指数退避重试。
+ * 数据写入一个新的带时间后缀的索引，全部成功后把别名原子地切换到新索引，查询不受影响。
+ * 重建期间的增量同步仍然写入别名指向的旧索引，因此扫描开始前由 {@link ItemChangeRecorder} 记录变更的商品，
+ * 扫描完成后按数据库的最新数据把这些商品重放到新索引，切换别名后再重放一次切换前最后到达的变更。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemReindexer {
+
+    private static final DateTimeFormatter SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final RestHighLevelClient client;
+    private final IItemService itemService;
+    private final EsProperties esProperties;
+    private final ItemChangeRecorder itemChangeRecorder;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "item-reindex"));
+    private volatile ReindexStatusDTO status = state(ReindexStatusDTO.IDLE, null);
+
+    /**
+     * 在后台线程中开始重建，立即返回，进度通过 {@link #status()} 查询
+     */
+    public ReindexStatusDTO start() {
+        if (!running.compareAndSet(false, true)) {
+            throw new BizIllegalException("索引重建正在进行中");
+        }
+        ReindexStatusDTO started = state(ReindexStatusDTO.RUNNING, LocalDateTime.now());
+        status = started;
+        executor.execute(() -> {
+            ReindexStatusDTO finished = state(ReindexStatusDTO.SUCCEEDED, started.getStartTime());
+            try {
+                finished.setResult(doReindex());
+            } catch (Exception e) {
+                finished.setState(ReindexStatusDTO.FAILED);
+                finished.setError(e.getMessage());
+            } finally {
+                finished.setEndTime(LocalDateTime.now());
+                status = finished;
+                running.set(false);
+            }
+        });
+        return started;
+    }
+
+    /**
+     * 最近一次重建的状态
+     */
+    public ReindexStatusDTO status() {
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static ReindexStatusDTO state(String state, LocalDateTime startTime) {
+        ReindexStatusDTO dto = new ReindexStatusDTO();
+        dto.setState(state);
+        dto.setStartTime(startTime);
+        return dto;
+    }
+
+    /**
+     * 在当前线程中重建
+     */
+    public ReindexResultDTO reindex() {
+        if (!running.compareAndSet(false, true)) {
+            throw new BizIllegalException("索引重建正在进行中");
+        }
+        try {
+            return doReindex();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ReindexResultDTO doReindex() {
+        EsProperties.Reindex config = esProperties.getReindex();
+        String index = ItemIndexConstants.INDEX_PREFIX + LocalDateTime.now().format(SUFFIX_FORMATTER);
+        Progress progress = new Progress();
+        BulkProcessor bulkProcessor = null;
+        ItemChangeRecorder.Recording recording = null;
+        try {
+            // 1.创建新索引，写入期间关闭刷新和副本
+            createIndex(index);
+            // 扫描开始前开始记录变更，扫描读到旧数据的商品之后一定会被记录
+            recording = itemChangeRecorder.start();
+            // 2.扫描数据库并写入
+            bulkProcessor = BulkProcessor.builder(
+                            (request, listener) -> client.bulkAsync(request, RequestOptions.DEFAULT, listener),
+                            progress)
+                    .setBulkActions(config.getBulkActions())
+                    .setBulkSize(new ByteSizeValue(config.getBulkSizeMb(), ByteSizeUnit.MB))
+                    .setConcurrentRequests(config.getConcurrentRequests())
+                    .setBackoffPolicy(BackoffPolicy.exponentialBackoff(
+                            TimeValue.timeValueMillis(config.getBackoffInitialDelay().toMillis()),
+                            config.getBackoffMaxRetries()))
+                    .build();
+            long lastId = 0;
+            while (true) {
+                List<Item> items = itemService.lambdaQuery()
+                        .eq(Item::getStatus, 1)
+                        .gt(Item::getId, lastId)
+                        .orderByAsc(Item::getId)
+                        .last("LIMIT " + config.getScanSize())
+                        .list();
+                for (Item item : items) {
+                    ItemDoc itemDoc = BeanUtil.copyProperties(item, ItemDoc.class);
+                    bulkProcessor.add(new IndexRequest(index)
+                            .id(String.valueOf(itemDoc.getId()))
+                            .source(JSONUtil.toJsonStr(itemDoc), XContentType.JSON));
+                }
+                if (items.size() < config.getScanSize()) {
+                    break;
+                }
+                lastId = items.get(items.size() - 1).getId();
+            }
+            boolean completed = bulkProcessor.awaitClose(config.getAwaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            if (!completed || progress.failures.sum() > 0) {
+                throw new BizIllegalException("写入索引失败，失败文档数：" + progress.failures.sum());
+            }
+            // 3.重放扫描期间变更的商品，直到没有新的变更或达到最大轮数
+            for (int round = 0; round < config.getMaxCatchUpRounds(); round++) {
+                if (replay(index, recording.drain(), progress) == 0) {
+                    break;
+                }
+            }
+            // 4.恢复索引设置并刷新
+            restoreSettings(index);
+            // 5.切换别名，之后的增量同步直接写入新索引
+            switchAlias(index);
+        } catch (Exception e) {
+            log.error("重建商品索引失败，删除新建的索引{}", index, e);
+            if (bulkProcessor != null) {
+                bulkProcessor.close();
+            }
+            if (recording != null) {
+                recording.close();
+            }
+            deleteQuietly(index);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e instanceof BizIllegalException ? (BizIllegalException) e : new BizIllegalException("重建商品索引失败", e);
+        }
+        // 6.重放最后一轮重放之后、切换别名之前写入旧索引的变更
+        try {
+            replay(index, recording.drain(), progress);
+        } catch (Exception e) {
+            log.error("切换别名后重放商品变更失败，相关商品等待下次变更时同步", e);
+        } finally {
+            recording.close();
+        }
+        ReindexResultDTO result = progress.toResult(index);
+        log.info("重建商品索引完成：{}", result);
+        return result;
+    }
+
+    /**
+     * 按数据库的最新数据把商品写入索引，已删除或下架的商品从索引中删除
+     *
+     * @return 重放的商品数量
+     */
+    private int replay(String index, List<Long> itemIds, Progress progress) throws IOException {
+        int batchSize = esProperties.getReindex().getBulkActions();
+        for (int from = 0; from < itemIds.size(); from += batchSize) {
+            List<Long> batch = itemIds.subList(from, Math.min(from + batchSize, itemIds.size()));
+            Map<Long, Item> items = itemService.listByIds(batch).stream()
+                    .collect(Collectors.toMap(Item::getId, Function.identity()));
+            BulkRequest request = new BulkRequest();
+            for (Long itemId : batch) {
+                Item item = items.get(itemId);
+                if (item == null || !Objects.equals(item.getStatus(), 1)) {
+                    request.add(new DeleteRequest(index, itemId.toString()));
+                    continue;
+                }
+                ItemDoc itemDoc = BeanUtil.copyProperties(item, ItemDoc.class);
+                request.add(new IndexRequest(index)
+                        .id(itemId.toString())
+                        .source(JSONUtil.toJsonStr(itemDoc), XContentType.JSON));
+            }
+            BulkResponse response = client.bulk(request, RequestOptions.DEFAULT);
+            // 删除不存在的文档返回404，不算失败
+            for (BulkItemResponse itemResponse : response.getItems()) {
+                if (itemResponse.isFailed()) {
+                    throw new BizIllegalException("重放商品变更失败：" + itemResponse.getFailureMessage());
+                }
+            }
+            progress.replayed.add(batch.size());
+        }
+        if (!itemIds.isEmpty()) {
+            log.info("重放索引重建期间变更的商品，数量：{}", itemIds.size());
+        }
+        return itemIds.size();
+    }
+
+    private void createIndex(String index) throws IOException {
+        CreateIndexRequest request = new CreateIndexRequest(index);
+        request.source(ItemIndexConstants.MAPPING_TEMPLATE, XContentType.JSON);
+        request.settings(Settings.builder()
+                .put("index.refresh_interval", "-1")
+                .put("index.number_of_replicas", 0));
+        client.indices().create(request, RequestOptions.DEFAULT);
+    }
+
+    private void restoreSettings(String index) throws IOException {
+        UpdateSettingsRequest request = new UpdateSettingsRequest(index);
+        // 恢复为默认值
+        request.settings(Settings.builder()
+                .putNull("index.refresh_interval")
+                .putNull("index.number_of_replicas"));
+        client.indices().putSettings(request, RequestOptions.DEFAULT);
+        client.indices().refresh(new RefreshRequest(index), RequestOptions.DEFAULT);
+    }
+
+    /**
+     * 在一个请求中把别名指向新索引并删除旧索引，ES保证这些动作原子生效
+     */
+    private void switchAlias(String index) throws IOException {
+        String alias = ItemIndexConstants.ALIAS_NAME;
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        request.addAliasAction(IndicesAliasesRequest.AliasActions.add().index(index).alias(alias));
+        GetAliasesRequest getAliases = new GetAliasesRequest(alias);
+        if (client.indices().existsAlias(getAliases, RequestOptions.DEFAULT)) {
+            Set<String> oldIndices = client.indices().getAlias(getAliases, RequestOptions.DEFAULT).getAliases().keySet();
+            for (String oldIndex : oldIndices) {
+                request.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(oldIndex));
+            }
+            log.info("商品索引别名{}从{}切换到{}", alias, oldIndices, index);
+        } else if (client.indices().exists(new GetIndexRequest(alias), RequestOptions.DEFAULT)) {
+            // 旧版本直接创建了名为items的索引，需要删除后别名才能使用这个名字
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(alias));
+            log.info("删除旧索引{}，并创建指向{}的别名", alias, index);
+        }
+        client.indices().updateAliases(request, RequestOptions.DEFAULT);
+    }
+
+    private void deleteQuietly(String index) {
+        try {
+            client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            log.warn("删除索引{}失败", index, e);
+        }
+    }
+
+    /**
+     * 统计写入进度，bulk的回调在ES客户端的IO线程中执行
+     */
+    private static class Progress implements BulkProcessor.Listener {
+        private final long startTime = System.currentTimeMillis();
+        private final LongAdder docs = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder replayed = new LongAdder();
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            bytes.add(request.estimatedSizeInBytes());
+            int failed = 0;
+            if (response.hasFailures()) {
+                for (BulkItemResponse item : response.getItems()) {
+                    if (item.isFailed()) {
+                        failed++;
+                    }
+                }
+                log.error("bulk请求部分失败：{}", response.buildFailureMessage());
+            }
+            failures.add(failed);
+            docs.add(request.numberOfActions() - failed);
+            log.info("已写入{}条文档，耗时{}ms，{}条/秒", docs.sum(), took(), docsPerSecond());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            bytes.add(request.estimatedSizeInBytes());
+            failures.add(request.numberOfActions());
+            log.error("bulk请求失败，文档数：{}", request.numberOfActions(), failure);
+        }
+
+        private long took() {
+            return System.currentTimeMillis() - startTime;
+        }
+
+        private long docsPerSecond() {
+            return docs.sum() * 1000 / Math.max(took(), 1);
+        }
+
+        private ReindexResultDTO toResult(String index) {
+            ReindexResultDTO result = new ReindexResultDTO();
+            result.setIndex(index);
+            result.setDocs(docs.sum());
+            result.setFailures(failures.sum());
+            result.setBytes(bytes.sum());
+            result.setReplayed(replayed.sum());
+            result.setTookMillis(took());
+            result.setDocsPerSecond(docsPerSecond());
+            return result;
+        }
+    }
+}
@@ -11,4 +11,10 @@ public interface ItemMapper extends BaseMapper<Item> {
 
     @Update("UPDATE item SET stock = stock - #{num} WHERE id = #{itemId}")
     void updateStock(OrderDetailDTO orderDetail);
+
+    @Update("UPDATE item SET stock = stock - #{num} WHERE id = #{itemId} AND stock >= #{num}")
+    void deductStock(OrderDetailDTO orderDetail);
+
+    @Update("UPDATE item SET stock = stock + #{num} WHERE id = #{itemId}")
+    void restoreStock(OrderDetailDTO orderDetail);
 }
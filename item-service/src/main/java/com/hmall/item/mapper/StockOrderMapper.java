@@ -0,0 +1,38 @@
+package com.hmall.item.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 按订单记录库存的扣减和归还状态，与库存更新在同一个本地事务中写入，保证按订单的扣减和归还都只执行一次。
+ * 同一订单的并发请求在主键上串行，先到的归还会占住订单，迟到的扣减不会再执行。
+ * <pre>
+ * CREATE TABLE item_stock_order (
+ *   order_id    BIGINT   NOT NULL PRIMARY KEY,
+ *   status      TINYINT  NOT NULL COMMENT '1-已扣减，2-已归还',
+ *   create_time DATETIME NOT NULL
+ * );
+ * </pre>
+ */
+public interface StockOrderMapper {
+
+    int DEDUCTED = 1;
+    int RESTORED = 2;
+
+    /**
+     * 插入订单状态，订单已经存在时抛出DuplicateKeyException
+     */
+    @Insert("INSERT INTO item_stock_order (order_id, status, create_time) VALUES (#{orderId}, #{status}, now())")
+    int insert(@Param("orderId") Long orderId, @Param("status") int status);
+
+    @Select("SELECT status FROM item_stock_order WHERE order_id = #{orderId}")
+    Integer selectStatus(@Param("orderId") Long orderId);
+
+    /**
+     * 把已扣减的订单改为已归还，返回0表示订单已经归还过
+     */
+    @Update("UPDATE item_stock_order SET status = 2 WHERE order_id = #{orderId} AND status = 1")
+    int markRestored(@Param("orderId") Long orderId);
+}
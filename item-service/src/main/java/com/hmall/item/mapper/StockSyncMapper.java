@@ -0,0 +1,35 @@
+package com.hmall.item.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * 记录已经写入数据库的库存同步批次，与库存更新在同一个本地事务中写入。
+ * 一轮同步的持有超时后其他实例会重新领取同一批数据，已经记录的批次不再重复写入。
+ * <pre>
+ * CREATE TABLE item_stock_sync (
+ *   sync_id     VARCHAR(64) NOT NULL PRIMARY KEY,
+ *   create_time DATETIME    NOT NULL,
+ *   KEY idx_create_time (create_time)
+ * );
+ * </pre>
+ */
+public interface StockSyncMapper {
+
+    /**
+     * 记录批次，批次已经存在时抛出DuplicateKeyException
+     */
+    @Insert("INSERT INTO item_stock_sync (sync_id, create_time) VALUES (#{syncId}, now())")
+    int insert(@Param("syncId") String syncId);
+
+    /**
+     * 删除一批早于指定时间的记录
+     *
+     * @return 删除的数量
+     */
+    @Delete("DELETE FROM item_stock_sync WHERE create_time < #{before} LIMIT #{limit}")
+    int deleteBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
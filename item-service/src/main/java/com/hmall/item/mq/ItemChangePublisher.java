@@ -0,0 +1,44 @@
+package com.hmall.item.mq;
+
+import com.hmall.common.constants.ItemMqConstants;
+import com.hmall.common.outbox.OutboxPublisher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * 发布商品变更事件，供其它服务失效本地缓存、同步搜索索引。
+ * <p>
+ * 搜索索引没有过期时间，丢失一条事件就会一直不一致，因此开启hm.outbox时事件写入发件箱，
+ * 由中继等待publisher confirm，失败时重试直到投递成功；未开启时直接发送，失败只记录日志。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemChangePublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectProvider<OutboxPublisher> outboxPublisherProvider;
+
+    public void publish(String routingKey, Collection<Long> itemIds) {
+        if (itemIds == null || itemIds.isEmpty()) {
+            return;
+        }
+        OutboxPublisher outboxPublisher = outboxPublisherProvider.getIfAvailable();
+        try {
+            if (outboxPublisher != null) {
+                // 有事务时随事务提交，没有事务时立即写入
+                outboxPublisher.send(ItemMqConstants.EXCHANGE_NAME, routingKey, new ArrayList<>(itemIds));
+            } else {
+                rabbitTemplate.convertAndSend(ItemMqConstants.EXCHANGE_NAME, routingKey, itemIds);
+            }
+        } catch (Exception e) {
+            log.error("发送商品变更消息失败，routingKey：{}，商品id：{}", routingKey, itemIds, e);
+        }
+    }
+}
@@ -3,16 +3,57 @@ package com.hmall.item.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmall.item.domain.dto.ItemDTO;
 import com.hmall.item.domain.dto.OrderDetailDTO;
+import com.hmall.item.domain.dto.StockResultDTO;
 import com.hmall.item.domain.po.Item;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 
 public interface IItemService extends IService<Item> {
-    void deductStock(List<OrderDetailDTO> items);
+    /**
+     * 批量扣减库存，同一商品的多条明细会合并，要么全部扣减成功，要么全部不扣减
+     *
+     * @param orderId 订单id，按订单幂等，下单失败或结果未知时可以按订单归还，可以为null
+     * @param items   要扣减的商品及数量
+     * @return 每个商品的扣减结果，任意商品不是SUCCESS时本次没有扣减任何库存
+     */
+    List<StockResultDTO> deductStock(Long orderId, List<OrderDetailDTO> items);
 
     List<ItemDTO> queryItemByIds(Collection<Long> ids);
 
-    void restoreStock(List<OrderDetailDTO> orderDetailDTOs);
+    /**
+     * 批量归还库存，同一商品的多条明细会合并，所有商品在一次JDBC批处理中以相对增量更新
+     *
+     * @param orderId         订单id，只归还该订单已经扣减的库存并且只归还一次，可以为null
+     * @param orderDetailDTOs 要归还的商品及数量
+     * @return 每个商品的归还结果，订单没有扣减过或已经归还过时为SKIPPED
+     */
+    List<StockResultDTO> restoreStock(Long orderId, List<OrderDetailDTO> orderDetailDTOs);
+
+    /**
+     * 按订单批量归还库存，每个订单只归还一次，所有订单在同一个本地事务中处理，
+     * 需要归还的商品合并后在一次JDBC批处理中更新
+     *
+     * @param details 订单id到订单明细的映射
+     * @return 每个请求的商品的归还结果，数量为实际归还的数量，所有订单都没有归还该商品时为SKIPPED
+     */
+    List<StockResultDTO> restoreStockByOrders(Map<Long, List<OrderDetailDTO>> details);
+
+    /**
+     * 修改商品信息。预扣减模式下库存的修改交给账本，与扣减一样异步同步到数据库
+     *
+     * @param item 要修改的字段，为null的字段不修改
+     */
+    void updateItem(Item item);
+
+    /**
+     * 把库存账本中累计的变化量写入数据库，同一批次只写入一次
+     *
+     * @param syncId 同步批次的标识
+     * @param deltas 商品id到库存变化量的映射，正数为扣减，负数为归还
+     * @return 是否写入，批次已经写入过时返回false
+     */
+    boolean applyStockDeltas(String syncId, Map<Long, Integer> deltas);
 }
@@ -1,37 +1,134 @@
 package com.hmall.item.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
 import com.hmall.common.exception.BizIllegalException;
 import com.hmall.common.utils.BeanUtils;
 
 import com.hmall.item.domain.dto.ItemDTO;
 import com.hmall.item.domain.dto.OrderDetailDTO;
+import com.hmall.item.domain.dto.StockResultDTO;
 import com.hmall.item.domain.po.Item;
+import com.hmall.item.enums.StockStatus;
 import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.mapper.StockOrderMapper;
+import com.hmall.item.mapper.StockSyncMapper;
 import com.hmall.item.service.IItemService;
+import com.hmall.item.stock.StockLedger;
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.executor.BatchResult;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 
 @Service
+@RequiredArgsConstructor
 public class ItemServiceImpl extends ServiceImpl<ItemMapper, Item> implements IItemService {
 
+    private final ObjectProvider<StockLedger> stockLedgerProvider;
+    private final StockOrderMapper stockOrderMapper;
+    private final StockSyncMapper stockSyncMapper;
+
     @Override
     @Transactional
-    public void deductStock(List<OrderDetailDTO> items) {
-        String sqlStatement = "com.hmall.item.mapper.ItemMapper.updateStock";
-        boolean r;
+    public List<StockResultDTO> deductStock(Long orderId, List<OrderDetailDTO> items) {
+        Map<Long, Integer> nums = StockLedger.merge(items);
+        StockLedger stockLedger = stockLedgerProvider.getIfAvailable();
+        Map<Long, StockStatus> failed;
+        if (stockLedger != null) {
+            // 预扣减模式只扣减账本，数据库由StockSyncTask异步同步。
+            // 账本不是Seata的分支，全局事务回滚不会撤销预扣减，由交易服务按订单id调用restoreStock补偿
+            failed = stockLedger.reserve(orderId, nums);
+        } else {
+            // 同一订单只扣减一次，超时重试或补偿先到达时不会重复扣减
+            StockStatus previous = orderId == null ? null : claimDeduct(orderId);
+            failed = previous == null ? deductFromDb(nums) : new HashMap<>();
+            if (previous == StockStatus.CANCELLED) {
+                nums.keySet().forEach(itemId -> failed.put(itemId, StockStatus.CANCELLED));
+            }
+        }
+        if (!failed.isEmpty()) {
+            // 只回滚本地事务，不抛出异常，由调用方根据结果快速失败
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+        List<StockResultDTO> results = new ArrayList<>(nums.size());
+        nums.forEach((itemId, num) ->
+                results.add(StockResultDTO.of(itemId, num, failed.getOrDefault(itemId, StockStatus.SUCCESS))));
+        return results;
+    }
+
+    /**
+     * 占用订单的扣减记录
+     *
+     * @return null表示订单第一次扣减；订单已经扣减过时返回SUCCESS，已经归还过时返回CANCELLED
+     */
+    private StockStatus claimDeduct(Long orderId) {
+        try {
+            stockOrderMapper.insert(orderId, StockOrderMapper.DEDUCTED);
+            return null;
+        } catch (DuplicateKeyException e) {
+            Integer status = stockOrderMapper.selectStatus(orderId);
+            return Objects.equals(status, StockOrderMapper.RESTORED) ? StockStatus.CANCELLED : StockStatus.SUCCESS;
+        }
+    }
+
+    /**
+     * 占用订单的归还记录。订单还没有扣减时记录为已归还，之后迟到的扣减会被拒绝
+     *
+     * @return 是否需要归还库存，只有已经扣减且没有归还过的订单返回true
+     */
+    private boolean claimRestore(Long orderId) {
         try {
-            r = executeBatch(items, (sqlSession, entity) -> sqlSession.update(sqlStatement, entity));
+            stockOrderMapper.insert(orderId, StockOrderMapper.RESTORED);
+            return false;
+        } catch (DuplicateKeyException e) {
+            return stockOrderMapper.markRestored(orderId) == 1;
+        }
+    }
+
+    /**
+     * 以带stock >= num条件的更新批量扣减数据库库存，影响行数为0的商品再区分是库存不足还是商品不存在
+     */
+    private Map<Long, StockStatus> deductFromDb(Map<Long, Integer> nums) {
+        List<OrderDetailDTO> details = new ArrayList<>(nums.size());
+        nums.forEach((itemId, num) -> details.add(new OrderDetailDTO().setItemId(itemId).setNum(num)));
+        int[] counts;
+        try {
+            counts = executeBatchForCounts("com.hmall.item.mapper.ItemMapper.deductStock", details);
         } catch (Exception e) {
-            throw new BizIllegalException("更新库存异常，可能是库存不足!", e);
+            throw new BizIllegalException("更新库存异常!", e);
+        }
+        List<Long> zeroIds = new ArrayList<>();
+        for (int i = 0; i < details.size(); i++) {
+            if (counts[i] == 0) {
+                zeroIds.add(details.get(i).getItemId());
+            }
         }
-        if (!r) {
-            throw new BizIllegalException("库存不足！");
+        Map<Long, StockStatus> failed = new HashMap<>();
+        if (zeroIds.isEmpty()) {
+            return failed;
         }
+        // 只有扣减失败时才多查一次，正常下单不会产生额外的查询
+        Set<Long> existIds = lambdaQuery().select(Item::getId).in(Item::getId, zeroIds).list()
+                .stream().map(Item::getId).collect(Collectors.toSet());
+        zeroIds.forEach(itemId ->
+                failed.put(itemId, existIds.contains(itemId) ? StockStatus.INSUFFICIENT : StockStatus.MISSING));
+        return failed;
     }
 
     @Override
@@ -41,13 +138,112 @@ public class ItemServiceImpl extends ServiceImpl<ItemMapper, Item> implements II
 
     @Override
     @Transactional
-    public void restoreStock(List<OrderDetailDTO> orderDetailDTOs) {
-        orderDetailDTOs.forEach(od -> {
-            Item item = lambdaQuery().eq(Item::getId, od.getItemId()).one();
-            lambdaUpdate()
-                    .set(Item::getStock, item.getStock() + od.getNum())
-                    .eq(Item::getId, od.getItemId())
-                    .update();
+    public List<StockResultDTO> restoreStock(Long orderId, List<OrderDetailDTO> orderDetailDTOs) {
+        return restoreStockByOrders(Collections.singletonMap(orderId, orderDetailDTOs));
+    }
+
+    @Override
+    @Transactional
+    public List<StockResultDTO> restoreStockByOrders(Map<Long, List<OrderDetailDTO>> details) {
+        StockLedger stockLedger = stockLedgerProvider.getIfAvailable();
+        Map<Long, Integer> requested = new LinkedHashMap<>();
+        Map<Long, Integer> restored = new LinkedHashMap<>();
+        details.forEach((orderId, items) -> {
+            Map<Long, Integer> nums = StockLedger.merge(items);
+            nums.forEach((itemId, num) -> requested.merge(itemId, num, Integer::sum));
+            // 每个订单单独判断是否需要归还，没有扣减过或已经归还过的订单不重复归还
+            boolean restore;
+            if (stockLedger != null) {
+                // 与预扣减对称，归还到账本中
+                restore = stockLedger.release(orderId, nums);
+            } else {
+                restore = orderId == null || claimRestore(orderId);
+            }
+            if (restore) {
+                nums.forEach((itemId, num) -> restored.merge(itemId, num, Integer::sum));
+            }
+        });
+        // 数据库模式下需要归还的商品合并后一次批量更新
+        Map<Long, StockStatus> statuses = new HashMap<>();
+        if (stockLedger == null && !restored.isEmpty()) {
+            restoreFromDb(restored).forEach(r -> statuses.put(r.getItemId(), r.getStatus()));
+        }
+        List<StockResultDTO> results = new ArrayList<>(requested.size());
+        requested.forEach((itemId, num) -> {
+            Integer restoredNum = restored.get(itemId);
+            if (restoredNum == null) {
+                results.add(StockResultDTO.of(itemId, num, StockStatus.SKIPPED));
+            } else {
+                results.add(StockResultDTO.of(itemId, restoredNum, statuses.getOrDefault(itemId, StockStatus.SUCCESS)));
+            }
+        });
+        return results;
+    }
+
+    private List<StockResultDTO> restoreFromDb(Map<Long, Integer> nums) {
+        List<StockResultDTO> results = new ArrayList<>(nums.size());
+        // 基于stock = stock + num的相对更新，并发取消订单时不会互相覆盖
+        List<OrderDetailDTO> details = new ArrayList<>(nums.size());
+        nums.forEach((itemId, num) -> details.add(new OrderDetailDTO().setItemId(itemId).setNum(num)));
+        int[] counts = executeBatchForCounts("com.hmall.item.mapper.ItemMapper.restoreStock", details);
+        for (int i = 0; i < details.size(); i++) {
+            OrderDetailDTO detail = details.get(i);
+            // 驱动开启批量改写时可能返回SUCCESS_NO_INFO(-2)，只有0才表示商品不存在
+            StockStatus status = counts[i] == 0 ? StockStatus.MISSING : StockStatus.SUCCESS;
+            results.add(StockResultDTO.of(detail.getItemId(), detail.getNum(), status));
+        }
+        return results;
+    }
+
+    @Override
+    @Transactional
+    public void updateItem(Item item) {
+        StockLedger stockLedger = stockLedgerProvider.getIfAvailable();
+        if (stockLedger != null && item.getStock() != null) {
+            // 直接修改数据库会与账本中的库存不一致，之后的同步是相对更新，差额会一直保留
+            if (!stockLedger.setStock(item.getId(), item.getStock())) {
+                throw new BizIllegalException("商品不存在");
+            }
+            item.setStock(null);
+        }
+        item.setUpdateTime(LocalDateTime.now());
+        updateById(item);
+    }
+
+    @Override
+    @Transactional
+    public boolean applyStockDeltas(String syncId, Map<Long, Integer> deltas) {
+        // 批次记录与库存更新一起提交，持有超时后被重新领取的批次不会重复写入
+        try {
+            stockSyncMapper.insert(syncId);
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        List<OrderDetailDTO> details = new ArrayList<>(deltas.size());
+        deltas.forEach((itemId, delta) -> {
+            if (delta != 0) {
+                details.add(new OrderDetailDTO().setItemId(itemId).setNum(delta));
+            }
+        });
+        String sqlStatement = "com.hmall.item.mapper.ItemMapper.updateStock";
+        executeBatch(details, (sqlSession, entity) -> sqlSession.update(sqlStatement, entity));
+        return true;
+    }
+
+    /**
+     * 以JDBC批处理执行更新，并返回每条语句的影响行数
+     */
+    private int[] executeBatchForCounts(String sqlStatement, List<OrderDetailDTO> details) {
+        int[] counts = new int[details.size()];
+        SqlHelper.executeBatch(getSqlSessionFactory(), log, sqlSession -> {
+            details.forEach(detail -> sqlSession.update(sqlStatement, detail));
+            int i = 0;
+            for (BatchResult batchResult : sqlSession.flushStatements()) {
+                for (int count : batchResult.getUpdateCounts()) {
+                    counts[i++] = count;
+                }
+            }
         });
+        return counts;
     }
 }
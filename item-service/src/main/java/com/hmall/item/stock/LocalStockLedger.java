@@ -0,0 +1,165 @@
+package com.hmall.item.stock;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.item.config.StockProperties;
+import com.hmall.item.enums.StockStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 基于本地内存的库存账本，语义与 {@link RedisStockLedger} 一致，用于离线测试和单实例部署
+ */
+@Component
+@ConditionalOnProperty(prefix = "hm.stock", name = "ledger", havingValue = "local")
+public class LocalStockLedger implements StockLedger {
+
+    private static final char RESERVED = 'D';
+    private static final char RELEASED = 'R';
+
+    private final StockLoader stockLoader;
+    /**
+     * 订单id到订单状态（D-已扣减，R-已归还）
+     */
+    private final Cache<Long, Character> orders;
+    private final Map<Long, Integer> stocks = new HashMap<>();
+    private Map<Long, Integer> pending = new HashMap<>();
+    private Map<Long, Integer> inflight;
+    private String syncId;
+    private String owner;
+
+    public LocalStockLedger(StockLoader stockLoader, StockProperties stockProperties) {
+        this.stockLoader = stockLoader;
+        this.orders = Caffeine.newBuilder()
+                .expireAfterWrite(stockProperties.getOrderTtl())
+                .build();
+    }
+
+    @Override
+    public synchronized Map<Long, StockStatus> reserve(Long orderId, Map<Long, Integer> nums) {
+        Map<Long, StockStatus> failed = new HashMap<>();
+        // 0.同一订单只扣减一次，已归还的订单不能再扣减
+        Character state = orderId == null ? null : orders.getIfPresent(orderId);
+        if (state != null) {
+            if (state == RELEASED) {
+                nums.keySet().forEach(itemId -> failed.put(itemId, StockStatus.CANCELLED));
+            }
+            return failed;
+        }
+        // 1.加载账本中缺失的商品
+        loadMissing(nums);
+        // 2.校验库存，任意一个不足则整体失败
+        nums.forEach((itemId, num) -> {
+            Integer stock = stocks.get(itemId);
+            if (stock == null) {
+                failed.put(itemId, StockStatus.MISSING);
+            } else if (stock < num) {
+                failed.put(itemId, StockStatus.INSUFFICIENT);
+            }
+        });
+        if (!failed.isEmpty()) {
+            return failed;
+        }
+        // 3.扣减并记录待同步的变化量
+        nums.forEach((itemId, num) -> {
+            stocks.merge(itemId, -num, Integer::sum);
+            pending.merge(itemId, num, Integer::sum);
+        });
+        if (orderId != null) {
+            orders.put(orderId, RESERVED);
+        }
+        return failed;
+    }
+
+    @Override
+    public synchronized boolean release(Long orderId, Map<Long, Integer> nums) {
+        if (orderId != null) {
+            Character state = orders.getIfPresent(orderId);
+            orders.put(orderId, RELEASED);
+            if (state == null || state != RESERVED) {
+                return false;
+            }
+        }
+        nums.forEach((itemId, num) -> {
+            // 账本中没有的商品以数据库为准，只需要记录变化量
+            stocks.computeIfPresent(itemId, (id, stock) -> stock + num);
+            pending.merge(itemId, -num, Integer::sum);
+        });
+        return true;
+    }
+
+    @Override
+    public synchronized boolean setStock(Long itemId, int stock) {
+        loadMissing(Collections.singletonMap(itemId, stock));
+        Integer current = stocks.get(itemId);
+        if (current == null) {
+            return false;
+        }
+        stocks.put(itemId, stock);
+        pending.merge(itemId, current - stock, Integer::sum);
+        return true;
+    }
+
+    @Override
+    public synchronized Integer available(Long itemId) {
+        return stocks.get(itemId);
+    }
+
+    @Override
+    public synchronized StockSyncRound beginSync() {
+        if (owner != null) {
+            return null;
+        }
+        if (inflight == null) {
+            inflight = pending;
+            pending = new HashMap<>();
+            syncId = UUID.randomUUID().toString();
+        }
+        owner = UUID.randomUUID().toString();
+        return new StockSyncRound(owner, syncId, new HashMap<>(inflight));
+    }
+
+    @Override
+    public synchronized boolean completeSync(String roundId) {
+        if (!roundId.equals(owner)) {
+            return false;
+        }
+        inflight = null;
+        syncId = null;
+        owner = null;
+        return true;
+    }
+
+    @Override
+    public synchronized void abortSync(String roundId) {
+        if (roundId.equals(owner)) {
+            owner = null;
+        }
+    }
+
+    private void loadMissing(Map<Long, Integer> nums) {
+        List<Long> missing = new ArrayList<>();
+        for (Long itemId : nums.keySet()) {
+            if (!stocks.containsKey(itemId)) {
+                missing.add(itemId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        // 数据库中的库存还没有包含尚未同步的变化量，需要减掉
+        stockLoader.load(missing).forEach((itemId, stock) ->
+                stocks.put(itemId, stock - unsynced(pending, itemId) - unsynced(inflight, itemId)));
+    }
+
+    private static int unsynced(Map<Long, Integer> deltas, Long itemId) {
+        return deltas == null ? 0 : deltas.getOrDefault(itemId, 0);
+    }
+}
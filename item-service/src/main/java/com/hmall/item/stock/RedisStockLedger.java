@@ -0,0 +1,286 @@
+package com.hmall.item.stock;
+
+import com.hmall.item.config.StockProperties;
+import com.hmall.item.enums.StockStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 基于Redis的库存账本。
+ * <p>
+ * 每个商品的可用库存存放在一个String中，扣减和归还都通过Lua脚本原子执行；
+ * 尚未同步到数据库的变化量累加在pending哈希中，同步时整体改名为inflight，确认写库后再删除，
+ * 同步过程中服务宕机，下一轮会重新同步inflight中的数据。
+ * 多个实例共用同一个账本，每轮同步先以SET NX领取sync-owner，只有持有者能确认（比较持有者后删除inflight），
+ * 同一时刻只有一个实例把inflight写入数据库；持有超时后被其他实例重新领取时，inflight的sync-id不变，写库时据此去重。
+ * 带订单id的扣减和归还在order key中记录订单状态（D-已扣减，R-已归还），重复请求不会重复扣减或归还。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "hm.stock", name = "ledger", havingValue = "redis")
+public class RedisStockLedger implements StockLedger {
+
+    /**
+     * KEYS[1]: pending，KEYS[2]: 订单key，KEYS[3..n+2]: 库存key；
+     * ARGV[1..n]: 扣减数量，ARGV[n+1..2n]: 商品id，ARGV[2n+1]: 订单key的过期毫秒数，0表示不记录订单
+     */
+    private static final RedisScript<List> RESERVE_SCRIPT = RedisScript.of(
+            "local n = #KEYS - 2\n" +
+            "local ttl = tonumber(ARGV[2 * n + 1])\n" +
+            "if ttl > 0 then\n" +
+            "    local state = redis.call('get', KEYS[2])\n" +
+            "    if state == 'D' then return {'ok'} end\n" +
+            "    if state == 'R' then return {'cancelled'} end\n" +
+            "end\n" +
+            "local missing = {}\n" +
+            "for i = 1, n do\n" +
+            "    if redis.call('exists', KEYS[i + 2]) == 0 then table.insert(missing, ARGV[n + i]) end\n" +
+            "end\n" +
+            "if #missing > 0 then table.insert(missing, 1, 'missing') return missing end\n" +
+            "local failed = {}\n" +
+            "for i = 1, n do\n" +
+            "    if tonumber(redis.call('get', KEYS[i + 2])) < tonumber(ARGV[i]) then table.insert(failed, ARGV[n + i]) end\n" +
+            "end\n" +
+            "if #failed > 0 then table.insert(failed, 1, 'insufficient') return failed end\n" +
+            "for i = 1, n do\n" +
+            "    redis.call('decrby', KEYS[i + 2], ARGV[i])\n" +
+            "    redis.call('hincrby', KEYS[1], ARGV[n + i], ARGV[i])\n" +
+            "end\n" +
+            "if ttl > 0 then redis.call('set', KEYS[2], 'D', 'PX', ttl) end\n" +
+            "return {'ok'}", List.class);
+
+    /**
+     * KEYS[1]: pending，KEYS[2]: 订单key，KEYS[3..n+2]: 库存key；
+     * ARGV[1..n]: 归还数量，ARGV[n+1..2n]: 商品id，ARGV[2n+1]: 订单key的过期毫秒数，0表示不记录订单。
+     * 记录订单时只归还已经预扣减的订单，并标记为已归还，之后迟到的预扣减会被拒绝
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+            "local n = #KEYS - 2\n" +
+            "local ttl = tonumber(ARGV[2 * n + 1])\n" +
+            "if ttl > 0 then\n" +
+            "    local state = redis.call('get', KEYS[2])\n" +
+            "    redis.call('set', KEYS[2], 'R', 'PX', ttl)\n" +
+            "    if state ~= 'D' then return 0 end\n" +
+            "end\n" +
+            "for i = 1, n do\n" +
+            "    if redis.call('exists', KEYS[i + 2]) == 1 then redis.call('incrby', KEYS[i + 2], ARGV[i]) end\n" +
+            "    redis.call('hincrby', KEYS[1], ARGV[n + i], -tonumber(ARGV[i]))\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1]: pending，KEYS[2]: inflight，KEYS[3]: 库存key；ARGV[1]: 商品id，ARGV[2]: 数据库库存
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = RedisScript.of(
+            "local p = tonumber(redis.call('hget', KEYS[1], ARGV[1]) or '0')\n" +
+            "local f = tonumber(redis.call('hget', KEYS[2], ARGV[1]) or '0')\n" +
+            "return redis.call('setnx', KEYS[3], tonumber(ARGV[2]) - p - f)", Long.class);
+
+    /**
+     * KEYS[1]: pending，KEYS[2]: inflight，KEYS[3]: 库存key；ARGV[1]: 商品id，ARGV[2]: 数据库库存，ARGV[3]: 修改后的库存。
+     * 账本中没有该商品时以数据库库存减去未同步的变化量为当前库存，与修改后的差额记入pending，返回差额
+     */
+    private static final RedisScript<Long> SET_STOCK_SCRIPT = RedisScript.of(
+            "local current = redis.call('get', KEYS[3])\n" +
+            "if not current then\n" +
+            "    local p = tonumber(redis.call('hget', KEYS[1], ARGV[1]) or '0')\n" +
+            "    local f = tonumber(redis.call('hget', KEYS[2], ARGV[1]) or '0')\n" +
+            "    current = tonumber(ARGV[2]) - p - f\n" +
+            "end\n" +
+            "local delta = tonumber(ARGV[3]) - tonumber(current)\n" +
+            "redis.call('set', KEYS[3], ARGV[3])\n" +
+            "if delta ~= 0 then redis.call('hincrby', KEYS[1], ARGV[1], -delta) end\n" +
+            "return delta", Long.class);
+
+    /**
+     * KEYS[1]: pending，KEYS[2]: inflight，KEYS[3]: owner，KEYS[4]: sync-id；
+     * ARGV[1]: 持有者标识，ARGV[2]: 持有超时毫秒数，ARGV[3]: pending转为inflight时使用的sync-id。
+     * 其他实例持有本轮时返回nil，否则返回sync-id和inflight中的变化量
+     */
+    private static final RedisScript<List> BEGIN_SYNC_SCRIPT = RedisScript.of(
+            "if not redis.call('set', KEYS[3], ARGV[1], 'NX', 'PX', ARGV[2]) then return nil end\n" +
+            "if redis.call('exists', KEYS[2]) == 0 and redis.call('exists', KEYS[1]) == 1 then\n" +
+            "    redis.call('rename', KEYS[1], KEYS[2])\n" +
+            "    redis.call('set', KEYS[4], ARGV[3])\n" +
+            "end\n" +
+            "local syncId = redis.call('get', KEYS[4])\n" +
+            "if not syncId then\n" +
+            "    syncId = ARGV[3]\n" +
+            "    redis.call('set', KEYS[4], syncId)\n" +
+            "end\n" +
+            "local result = redis.call('hgetall', KEYS[2])\n" +
+            "table.insert(result, 1, syncId)\n" +
+            "return result", List.class);
+
+    /**
+     * KEYS[1]: inflight，KEYS[2]: owner，KEYS[3]: sync-id；ARGV[1]: 持有者标识
+     */
+    private static final RedisScript<Long> COMPLETE_SYNC_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[2]) ~= ARGV[1] then return 0 end\n" +
+            "redis.call('del', KEYS[1], KEYS[2], KEYS[3])\n" +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1]: owner；ARGV[1]: 持有者标识
+     */
+    private static final RedisScript<Long> ABORT_SYNC_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) ~= ARGV[1] then return 0 end\n" +
+            "return redis.call('del', KEYS[1])", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final StockLoader stockLoader;
+    private final StockProperties stockProperties;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Long, StockStatus> reserve(Long orderId, Map<Long, Integer> nums) {
+        List<String> result = execute(orderId, nums);
+        if ("missing".equals(result.get(0))) {
+            // 账本中没有的商品先从数据库加载，然后重试一次
+            loadMissing(toIds(result));
+            result = execute(orderId, nums);
+        }
+        Map<Long, StockStatus> failed = new HashMap<>();
+        if ("ok".equals(result.get(0))) {
+            return failed;
+        }
+        if ("cancelled".equals(result.get(0))) {
+            // 订单已经归还过库存（补偿先于扣减到达），不能再扣减
+            nums.keySet().forEach(itemId -> failed.put(itemId, StockStatus.CANCELLED));
+            return failed;
+        }
+        // 重新加载后仍然缺失，说明数据库中也不存在
+        StockStatus status = "missing".equals(result.get(0)) ? StockStatus.MISSING : StockStatus.INSUFFICIENT;
+        toIds(result).forEach(itemId -> failed.put(itemId, status));
+        return failed;
+    }
+
+    @Override
+    public boolean release(Long orderId, Map<Long, Integer> nums) {
+        Long released = redisTemplate.execute(RELEASE_SCRIPT, keys(orderId, nums), args(orderId, nums));
+        return released != null && released == 1;
+    }
+
+    @Override
+    public boolean setStock(Long itemId, int stock) {
+        Integer dbStock = stockLoader.load(Collections.singletonList(itemId)).get(itemId);
+        if (dbStock == null) {
+            return false;
+        }
+        Long delta = redisTemplate.execute(SET_STOCK_SCRIPT,
+                Arrays.asList(pendingKey(), inflightKey(), stockKey(itemId)),
+                itemId.toString(), dbStock.toString(), String.valueOf(stock));
+        log.info("修改商品库存，商品id：{}，修改后：{}，变化量：{}", itemId, stock, delta);
+        return true;
+    }
+
+    @Override
+    public Integer available(Long itemId) {
+        String stock = redisTemplate.opsForValue().get(stockKey(itemId));
+        return stock == null ? null : Integer.valueOf(stock);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public StockSyncRound beginSync() {
+        String roundId = UUID.randomUUID().toString();
+        List<String> entries = redisTemplate.execute(BEGIN_SYNC_SCRIPT,
+                Arrays.asList(pendingKey(), inflightKey(), ownerKey(), syncIdKey()),
+                roundId, String.valueOf(stockProperties.getSyncLockTtl().toMillis()), UUID.randomUUID().toString());
+        if (entries == null) {
+            return null;
+        }
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (int i = 1; i + 1 < entries.size(); i += 2) {
+            deltas.put(Long.valueOf(entries.get(i)), Integer.valueOf(entries.get(i + 1)));
+        }
+        return new StockSyncRound(roundId, entries.get(0), deltas);
+    }
+
+    @Override
+    public boolean completeSync(String roundId) {
+        Long done = redisTemplate.execute(COMPLETE_SYNC_SCRIPT,
+                Arrays.asList(inflightKey(), ownerKey(), syncIdKey()), roundId);
+        return done != null && done == 1;
+    }
+
+    @Override
+    public void abortSync(String roundId) {
+        redisTemplate.execute(ABORT_SYNC_SCRIPT, Collections.singletonList(ownerKey()), roundId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> execute(Long orderId, Map<Long, Integer> nums) {
+        return redisTemplate.execute(RESERVE_SCRIPT, keys(orderId, nums), args(orderId, nums));
+    }
+
+    private void loadMissing(List<Long> itemIds) {
+        Map<Long, Integer> stocks = stockLoader.load(itemIds);
+        stocks.forEach((itemId, stock) -> redisTemplate.execute(LOAD_SCRIPT,
+                Arrays.asList(pendingKey(), inflightKey(), stockKey(itemId)),
+                itemId.toString(), stock.toString()));
+        log.debug("加载商品库存到Redis账本，商品数量：{}", stocks.size());
+    }
+
+    private List<String> keys(Long orderId, Map<Long, Integer> nums) {
+        List<String> keys = new ArrayList<>(nums.size() + 2);
+        keys.add(pendingKey());
+        keys.add(orderKey(orderId));
+        nums.keySet().forEach(itemId -> keys.add(stockKey(itemId)));
+        return keys;
+    }
+
+    private Object[] args(Long orderId, Map<Long, Integer> nums) {
+        List<String> args = new ArrayList<>(nums.size() * 2 + 1);
+        nums.values().forEach(num -> args.add(num.toString()));
+        nums.keySet().forEach(itemId -> args.add(itemId.toString()));
+        args.add(orderId == null ? "0" : String.valueOf(stockProperties.getOrderTtl().toMillis()));
+        return args.toArray();
+    }
+
+    private static List<Long> toIds(List<String> result) {
+        List<Long> ids = new ArrayList<>(result.size() - 1);
+        for (int i = 1; i < result.size(); i++) {
+            ids.add(Long.valueOf(result.get(i)));
+        }
+        return ids;
+    }
+
+    // 所有key使用同一个hash tag，保证Lua脚本在集群模式下落在同一个slot
+    private String stockKey(Long itemId) {
+        return stockProperties.getKeyPrefix() + "{ledger}:" + itemId;
+    }
+
+    private String orderKey(Long orderId) {
+        return stockProperties.getKeyPrefix() + "{ledger}:order:" + (orderId == null ? "none" : orderId);
+    }
+
+    private String pendingKey() {
+        return stockProperties.getKeyPrefix() + "{ledger}:pending";
+    }
+
+    private String inflightKey() {
+        return stockProperties.getKeyPrefix() + "{ledger}:inflight";
+    }
+
+    private String ownerKey() {
+        return stockProperties.getKeyPrefix() + "{ledger}:sync-owner";
+    }
+
+    private String syncIdKey() {
+        return stockProperties.getKeyPrefix() + "{ledger}:sync-id";
+    }
+}
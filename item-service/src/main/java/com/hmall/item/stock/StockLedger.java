@@ -0,0 +1,102 @@
+package com.hmall.item.stock;
+
+import com.hmall.item.domain.dto.OrderDetailDTO;
+import com.hmall.item.enums.StockStatus;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 库存预扣减账本。
+ * <p>
+ * 下单时直接在账本中原子扣减库存，不再逐行更新item表，账本中累计的库存变化量由
+ * {@link StockSyncTask} 定时批量同步回数据库。
+ */
+public interface StockLedger {
+
+    /**
+     * 原子预扣减一批商品的库存，要么全部成功，要么全部不扣减。
+     * 带订单id时按订单幂等：同一订单重复扣减直接返回成功，订单已经归还过时返回CANCELLED。
+     *
+     * @param orderId 订单id，为null时不做幂等控制
+     * @param nums    商品id到扣减数量的映射
+     * @return 扣减失败的商品id及原因（库存不足或商品不存在），为空表示全部扣减成功
+     */
+    Map<Long, StockStatus> reserve(Long orderId, Map<Long, Integer> nums);
+
+    default Map<Long, StockStatus> reserve(Map<Long, Integer> nums) {
+        return reserve(null, nums);
+    }
+
+    /**
+     * 归还库存，与 {@link #reserve(Long, Map)} 对称。
+     * 带订单id时只归还该订单已经扣减的库存，并且只归还一次；订单还没有扣减时只记录已归还，之后的扣减会被拒绝。
+     *
+     * @param orderId 订单id，为null时直接归还
+     * @param nums    商品id到归还数量的映射
+     * @return 是否实际归还了库存
+     */
+    boolean release(Long orderId, Map<Long, Integer> nums);
+
+    default boolean release(Map<Long, Integer> nums) {
+        return release(null, nums);
+    }
+
+    /**
+     * 把商品的可用库存修改为指定值，用于管理员修改库存。
+     * 修改量与扣减一样记录为待同步的变化量，由 {@link StockSyncTask} 写入数据库，
+     * 不直接修改数据库，避免数据库与账本之间的差额被后续的相对更新放大。
+     *
+     * @param itemId 商品id
+     * @param stock  修改后的可用库存
+     * @return 是否修改成功，数据库中不存在该商品时返回false
+     */
+    boolean setStock(Long itemId, int stock);
+
+    /**
+     * 查询账本中的可用库存，账本中没有该商品时返回null。
+     */
+    Integer available(Long itemId);
+
+    /**
+     * 判断商品是否已售罄，只读账本不访问数据库。
+     */
+    default boolean isSoldOut(Long itemId) {
+        Integer available = available(itemId);
+        return available != null && available <= 0;
+    }
+
+    /**
+     * 领取一轮同步，取出待同步到数据库的库存变化量。
+     * 上一轮同步未确认时，返回上一轮的数据以便重试；其他实例正在同步时返回null。
+     */
+    StockSyncRound beginSync();
+
+    /**
+     * 确认本轮同步已经写入数据库，只有本轮的持有者才能确认。
+     * 持有超时后其他实例会重新领取同一批数据，写库时需要按 {@link StockSyncRound#getSyncId()} 去重
+     *
+     * @param roundId {@link StockSyncRound#getId()}
+     * @return 是否确认成功，持有已经超时被其他实例领取时返回false
+     */
+    boolean completeSync(String roundId);
+
+    /**
+     * 放弃本轮同步，数据保留，下一次领取时重新同步
+     *
+     * @param roundId {@link StockSyncRound#getId()}
+     */
+    void abortSync(String roundId);
+
+    /**
+     * 合并同一商品的多条明细
+     */
+    static Map<Long, Integer> merge(Collection<OrderDetailDTO> details) {
+        Map<Long, Integer> nums = new LinkedHashMap<>(details.size());
+        for (OrderDetailDTO detail : details) {
+            nums.merge(detail.getItemId(), detail.getNum(), Integer::sum);
+        }
+        return nums;
+    }
+}
@@ -0,0 +1,16 @@
+package com.hmall.item.stock;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 账本中缺失商品时，从数据库加载当前库存
+ */
+@FunctionalInterface
+public interface StockLoader {
+    /**
+     * @param itemIds 商品id
+     * @return 商品id到数据库库存的映射，不存在的商品不包含在结果中
+     */
+    Map<Long, Integer> load(Collection<Long> itemIds);
+}
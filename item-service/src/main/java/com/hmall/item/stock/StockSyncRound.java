@@ -0,0 +1,27 @@
+package com.hmall.item.stock;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 一轮库存同步，只有领取到本轮的实例才能确认或放弃
+ */
+@Getter
+@RequiredArgsConstructor
+public class StockSyncRound {
+    /**
+     * 本轮的持有者标识
+     */
+    private final String id;
+    /**
+     * 本轮数据的标识，在待同步数据转为同步中时生成，持有超时后其他实例重新领取同一批数据时不变，
+     * 写库时以它防止同一批数据被重复写入
+     */
+    private final String syncId;
+    /**
+     * 待同步到数据库的库存变化量，正数为扣减，负数为归还
+     */
+    private final Map<Long, Integer> deltas;
+}
@@ -0,0 +1,88 @@
+package com.hmall.item.stock;
+
+import com.hmall.common.constants.ItemMqConstants;
+import com.hmall.item.mapper.StockSyncMapper;
+import com.hmall.item.mq.ItemChangePublisher;
+import com.hmall.item.service.IItemService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 定时把库存账本中累计的变化量批量同步到item表
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockSyncTask {
+
+    private static final Duration SYNC_RECORD_RETENTION = Duration.ofDays(1);
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final ObjectProvider<StockLedger> stockLedgerProvider;
+    private final IItemService itemService;
+    private final StockSyncMapper stockSyncMapper;
+    private final ItemChangePublisher itemChangePublisher;
+
+    @Scheduled(fixedDelayString = "${hm.stock.sync-interval:1000}")
+    public void syncStock() {
+        StockLedger stockLedger = stockLedgerProvider.getIfAvailable();
+        if (stockLedger == null) {
+            return;
+        }
+        StockSyncRound round = stockLedger.beginSync();
+        if (round == null) {
+            // 其他实例正在同步
+            return;
+        }
+        Map<Long, Integer> deltas = round.getDeltas();
+        if (deltas.isEmpty()) {
+            stockLedger.abortSync(round.getId());
+            return;
+        }
+        boolean applied;
+        try {
+            applied = itemService.applyStockDeltas(round.getSyncId(), deltas);
+        } catch (Exception e) {
+            // 不确认本轮同步，下一轮会重新同步
+            log.error("同步库存到数据库失败，商品数量：{}", deltas.size(), e);
+            stockLedger.abortSync(round.getId());
+            return;
+        }
+        if (applied) {
+            // 数据库库存已经变化，通知搜索索引和各服务的缓存重新加载
+            itemChangePublisher.publish(ItemMqConstants.STOCK_KEY, deltas.keySet());
+        } else {
+            // 上一个持有者超时前已经写入并通知，只需要确认
+            log.info("库存同步批次已经写入过，跳过，批次：{}", round.getSyncId());
+        }
+        if (!stockLedger.completeSync(round.getId())) {
+            // 已写入的批次有记录，重新领取的实例不会重复写入
+            log.warn("库存同步的持有已超时，由重新领取的实例确认，请调大hm.stock.sync-lock-ttl，批次：{}",
+                    round.getSyncId());
+            return;
+        }
+        log.debug("同步库存到数据库完成，商品数量：{}", deltas.size());
+    }
+
+    /**
+     * 清理已经确认的同步批次记录，保留时间需要远大于hm.stock.sync-lock-ttl
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 60000)
+    public void purgeSyncRecords() {
+        if (stockLedgerProvider.getIfAvailable() == null) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minus(SYNC_RECORD_RETENTION);
+        int purged;
+        do {
+            purged = stockSyncMapper.deleteBefore(before, PURGE_BATCH_SIZE);
+        } while (purged >= PURGE_BATCH_SIZE);
+    }
+}
@@ -1,16 +1,13 @@
 package com.hmall.item.es;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.json.JSONUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
-import com.hmall.common.utils.CollUtils;
 import com.hmall.item.ItemApplication;
+import com.hmall.item.domain.dto.ReindexResultDTO;
 import com.hmall.item.domain.po.Item;
 import com.hmall.item.domain.po.ItemDoc;
 import com.hmall.item.service.IItemService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpHost;
-import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
@@ -27,7 +24,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.io.IOException;
-import java.util.List;
 
 @SpringBootTest(properties = "spring.profiles.active=local", classes = ItemApplication.class)
 @Slf4j
@@ -36,6 +32,8 @@ public class DocumentTest {
     private RestHighLevelClient client;
     @Autowired
     private IItemService itemService;
+    @Autowired
+    private ItemReindexer itemReindexer;
 
     @BeforeEach
     void setUp() {
@@ -82,35 +80,9 @@ public class DocumentTest {
     }
 
     @Test
-    void testLoadItemDocs() throws IOException {
-        // 分页查询商品数据
-        int pageNo = 1;
-        int size = 1000;
-        while (true) {
-            Page<Item> page = itemService.lambdaQuery().eq(Item::getStatus, 1).page(new Page<Item>(pageNo, size));
-            // 非空校验
-            List<Item> items = page.getRecords();
-            if (CollUtils.isEmpty(items)) {
-                return;
-            }
-            log.info("加载第{}页数据，共{}条", pageNo, items.size());
-            // 1.创建Request
-            BulkRequest request = new BulkRequest("items");
-            // 2.准备参数，添加多个新增的Request
-            for (Item item : items) {
-                // 2.1.转换为文档类型ItemDTO
-                ItemDoc itemDoc = BeanUtil.copyProperties(item, ItemDoc.class);
-                // 2.2.创建新增文档的Request对象
-                request.add(new IndexRequest()
-                        .id(String.valueOf(itemDoc.getId()))
-                        .source(JSONUtil.toJsonStr(itemDoc), XContentType.JSON));
-            }
-            // 3.发送请求
-            client.bulk(request, RequestOptions.DEFAULT);
-
-            // 翻页
-            pageNo++;
-        }
+    void testLoadItemDocs() {
+        ReindexResultDTO result = itemReindexer.reindex();
+        log.info("重建索引完成：{}", result);
     }
 
     @AfterEach
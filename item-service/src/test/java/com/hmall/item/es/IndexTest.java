@@ -35,7 +35,7 @@ public class IndexTest {
         // 1.创建Request对象
         CreateIndexRequest request = new CreateIndexRequest("items");
         // 2.准备请求参数
-        request.source(MAPPING_TEMPLATE, XContentType.JSON);
+        request.source(ItemIndexConstants.MAPPING_TEMPLATE, XContentType.JSON);
         // 3.发送请求
         client.indices().create(request, RequestOptions.DEFAULT);
     }
@@ -58,48 +58,6 @@ public class IndexTest {
         System.err.println(exists ? "索引库已经存在！" : "索引库不存在！");
     }
 
-    static final String MAPPING_TEMPLATE = "{\n" +
-            "  \"mappings\": {\n" +
-            "    \"properties\": {\n" +
-            "      \"id\": {\n" +
-            "        \"type\": \"keyword\"\n" +
-            "      },\n" +
-            "      \"name\":{\n" +
-            "        \"type\": \"text\",\n" +
-            "        \"analyzer\": \"ik_max_word\"\n" +
-            "      },\n" +
-            "      \"price\":{\n" +
-            "        \"type\": \"integer\"\n" +
-            "      },\n" +
-            "      \"stock\":{\n" +
-            "        \"type\": \"integer\"\n" +
-            "      },\n" +
-            "      \"image\":{\n" +
-            "        \"type\": \"keyword\",\n" +
-            "        \"index\": false\n" +
-            "      },\n" +
-            "      \"category\":{\n" +
-            "        \"type\": \"keyword\"\n" +
-            "      },\n" +
-            "      \"brand\":{\n" +
-            "        \"type\": \"keyword\"\n" +
-            "      },\n" +
-            "      \"sold\":{\n" +
-            "        \"type\": \"integer\"\n" +
-            "      },\n" +
-            "      \"commentCount\":{\n" +
-            "        \"type\": \"integer\"\n" +
-            "      },\n" +
-            "      \"isAD\":{\n" +
-            "        \"type\": \"boolean\"\n" +
-            "      },\n" +
-            "      \"updateTime\":{\n" +
-            "        \"type\": \"date\"\n" +
-            "      }\n" +
-            "    }\n" +
-            "  }\n" +
-            "}";
-
     @AfterEach
     void tearDown() throws IOException {
         this.client.close();
@@ -0,0 +1,114 @@
+package com.hmall.item.stock;
+
+import com.hmall.item.config.StockProperties;
+import com.hmall.item.enums.StockStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalStockLedgerTest {
+
+    private final Map<Long, Integer> db = new HashMap<>();
+    private LocalStockLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        db.put(1L, 10);
+        db.put(2L, 1);
+        ledger = new LocalStockLedger(itemIds -> {
+            Map<Long, Integer> stocks = new HashMap<>();
+            itemIds.forEach(id -> {
+                if (db.containsKey(id)) {
+                    stocks.put(id, db.get(id));
+                }
+            });
+            return stocks;
+        }, new StockProperties());
+    }
+
+    @Test
+    void testReserveAllOrNothing() {
+        Map<Long, StockStatus> failed = ledger.reserve(Map.of(1L, 3, 2L, 2));
+        assertEquals(Map.of(2L, StockStatus.INSUFFICIENT), failed);
+        // 库存不足时任何商品都不扣减
+        assertEquals(10, ledger.available(1L));
+        assertEquals(1, ledger.available(2L));
+
+        assertTrue(ledger.reserve(Map.of(1L, 3, 2L, 1)).isEmpty());
+        assertEquals(7, ledger.available(1L));
+        assertTrue(ledger.isSoldOut(2L));
+    }
+
+    @Test
+    void testReserveMissingItem() {
+        assertEquals(Map.of(3L, StockStatus.MISSING), ledger.reserve(Map.of(3L, 1, 1L, 1)));
+        assertEquals(10, ledger.available(1L));
+    }
+
+    @Test
+    void testReleaseIsSymmetric() {
+        ledger.reserve(Map.of(1L, 4));
+        ledger.release(Map.of(1L, 4));
+        assertEquals(10, ledger.available(1L));
+        assertEquals(0, ledger.beginSync().getDeltas().get(1L));
+    }
+
+    @Test
+    void testOrderIdempotent() {
+        assertTrue(ledger.reserve(100L, Map.of(1L, 4)).isEmpty());
+        // 重复扣减不再扣减库存
+        assertTrue(ledger.reserve(100L, Map.of(1L, 4)).isEmpty());
+        assertEquals(6, ledger.available(1L));
+        // 只归还一次
+        assertTrue(ledger.release(100L, Map.of(1L, 4)));
+        assertFalse(ledger.release(100L, Map.of(1L, 4)));
+        assertEquals(10, ledger.available(1L));
+        // 已归还的订单不能再扣减
+        assertEquals(Map.of(1L, StockStatus.CANCELLED), ledger.reserve(100L, Map.of(1L, 4)));
+
+        // 补偿先于扣减到达时只记录已归还，迟到的扣减被拒绝
+        assertFalse(ledger.release(101L, Map.of(1L, 2)));
+        assertEquals(10, ledger.available(1L));
+        assertEquals(Map.of(1L, StockStatus.CANCELLED), ledger.reserve(101L, Map.of(1L, 2)));
+        assertEquals(10, ledger.available(1L));
+    }
+
+    @Test
+    void testSetStock() {
+        ledger.reserve(Map.of(1L, 4));
+        // 管理员把库存改为20，账本立即生效，差额与扣减一起同步到数据库
+        assertTrue(ledger.setStock(1L, 20));
+        assertEquals(20, ledger.available(1L));
+        assertEquals(Map.of(1L, -10), ledger.beginSync().getDeltas());
+        // 账本中还没有的商品以数据库库存为准
+        assertTrue(ledger.setStock(2L, 5));
+        assertEquals(5, ledger.available(2L));
+        assertFalse(ledger.setStock(3L, 5));
+    }
+
+    @Test
+    void testSync() {
+        ledger.reserve(Map.of(1L, 4));
+        StockSyncRound round = ledger.beginSync();
+        assertEquals(Map.of(1L, 4), round.getDeltas());
+        // 本轮被持有时不能再领取
+        assertNull(ledger.beginSync());
+        // 放弃后重试同一批数据，新的扣减进入下一批
+        ledger.abortSync(round.getId());
+        ledger.reserve(Map.of(1L, 1));
+        StockSyncRound retry = ledger.beginSync();
+        assertEquals(round.getDeltas(), retry.getDeltas());
+        // 重新领取同一批数据时批次标识不变，写库时据此去重
+        assertEquals(round.getSyncId(), retry.getSyncId());
+        // 旧的持有者不能确认
+        assertFalse(ledger.completeSync(round.getId()));
+        assertTrue(ledger.completeSync(retry.getId()));
+        StockSyncRound next = ledger.beginSync();
+        assertEquals(Map.of(1L, 1), next.getDeltas());
+        assertNotEquals(round.getSyncId(), next.getSyncId());
+    }
+}
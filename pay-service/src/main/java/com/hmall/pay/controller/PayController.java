@@ -4,6 +4,7 @@ import com.hmall.api.domain.dto.PayOrderDTO;
 import com.hmall.common.exception.BizIllegalException;
 
 import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CollUtils;
 import com.hmall.pay.domain.dto.PayApplyDTO;
 import com.hmall.pay.domain.dto.PayOrderFormDTO;
 import com.hmall.pay.domain.po.PayOrder;
@@ -16,6 +17,7 @@ import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collection;
 import java.util.List;
 
 @Api(tags = "支付相关接口")
@@ -57,10 +59,34 @@ public class PayController {
         return BeanUtils.copyBean(payOrder, PayOrderDTO.class);
     }
 
+    @ApiOperation("根据业务订单号批量查询支付单")
+    @ApiImplicitParam(value = "业务订单号集合", name = "ids")
+    @GetMapping("/biz")
+    public List<PayOrderDTO> queryPayOrdersByBizOrderNos(@RequestParam("ids") Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyList();
+        }
+        List<PayOrder> payOrders = payOrderService.lambdaQuery()
+                .select(PayOrder::getId, PayOrder::getBizOrderNo, PayOrder::getStatus, PayOrder::getPaySuccessTime)
+                .in(PayOrder::getBizOrderNo, ids)
+                .list();
+        return BeanUtils.copyList(payOrders, PayOrderDTO.class);
+    }
+
     @PutMapping("/biz/{id}/{status}")
     public void updateOrderStatusByOrderId(@PathVariable("id") Long id,
                                            @PathVariable("status") Integer status) {
         payOrderService.updateOrderStatusByOrderId(id, status);
     }
 
+    @ApiOperation("根据业务订单号批量修改支付单状态")
+    @ApiImplicitParam(value = "业务订单号集合", name = "ids")
+    @PutMapping("/biz/status/{status}")
+    public void updateOrderStatusByOrderIds(@RequestParam("ids") Collection<Long> ids,
+                                            @PathVariable("status") Integer status) {
+        if (CollUtils.isNotEmpty(ids)) {
+            payOrderService.updateOrderStatusByOrderIds(ids, status);
+        }
+    }
+
 }
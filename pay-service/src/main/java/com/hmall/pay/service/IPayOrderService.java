@@ -5,6 +5,8 @@ import com.hmall.pay.domain.dto.PayApplyDTO;
 import com.hmall.pay.domain.dto.PayOrderFormDTO;
 import com.hmall.pay.domain.po.PayOrder;
 
+import java.util.Collection;
+
 
 /**
  * <p>
@@ -21,4 +23,6 @@ public interface IPayOrderService extends IService<PayOrder> {
     void tryPayOrderByBalance(PayOrderFormDTO payOrderFormDTO);
 
     void updateOrderStatusByOrderId(Long id, Integer status);
+
+    void updateOrderStatusByOrderIds(Collection<Long> ids, Integer status);
 }
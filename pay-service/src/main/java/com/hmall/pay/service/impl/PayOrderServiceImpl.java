@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmall.api.clients.TradeClient;
 import com.hmall.api.clients.UserClient;
 import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.outbox.OutboxPublisher;
 import com.hmall.common.utils.UserContext;
 
 import com.hmall.pay.domain.dto.PayApplyDTO;
@@ -19,10 +20,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 /**
  * <p>
@@ -41,6 +44,7 @@ public class PayOrderServiceImpl extends ServiceImpl<PayOrderMapper, PayOrder> i
 
     private final TradeClient tradeClient;
     private final RabbitTemplate rabbitTemplate;
+    private final ObjectProvider<OutboxPublisher> outboxPublisherProvider;
 
     @Override
     public String applyPayOrder(PayApplyDTO applyDTO) {
@@ -80,6 +84,13 @@ public class PayOrderServiceImpl extends ServiceImpl<PayOrderMapper, PayOrder> i
             throw new BizIllegalException("交易已支付或关闭！");
         }
 
+        // 开启发件箱时，消息与支付单状态在同一个本地事务中写入，由中继异步投递
+        OutboxPublisher outboxPublisher = outboxPublisherProvider.getIfAvailable();
+        if (outboxPublisher != null) {
+            outboxPublisher.send("pay.direct", "pay.success", po.getBizOrderNo());
+            return;
+        }
+
         // 通过RabbitMQ发送消息，通知相关系统订单支付成功
         try {
             rabbitTemplate.convertAndSend("pay.direct", "pay.success", po.getBizOrderNo());
@@ -96,6 +107,14 @@ public class PayOrderServiceImpl extends ServiceImpl<PayOrderMapper, PayOrder> i
                 .update();
     }
 
+    @Override
+    public void updateOrderStatusByOrderIds(Collection<Long> ids, Integer status) {
+        lambdaUpdate()
+                .set(PayOrder::getStatus, status)
+                .in(PayOrder::getBizOrderNo, ids)
+                .update();
+    }
+
 
     public boolean markPayOrderSuccess(Long id, LocalDateTime successTime) {
         return lambdaUpdate()
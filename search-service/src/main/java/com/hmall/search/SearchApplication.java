@@ -1,10 +1,12 @@
 package com.hmall.search;
 
 
+import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 
+@MapperScan("com.hmall.search.mapper")
 @SpringBootApplication
 public class SearchApplication {
     public static void main(String[] args) {
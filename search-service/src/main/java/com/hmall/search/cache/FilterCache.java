@@ -0,0 +1,98 @@
+package com.hmall.search.cache;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.search.config.SearchProperties;
+import com.hmall.search.domain.query.ItemPageQuery;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 过滤项（分类、品牌聚合）的结果缓存。
+ * <p>
+ * key由索引代数和规范化后的查询条件组成，不包含分页和排序参数。定时读取索引的写入计数，
+ * 计数变化时代数加一，并在下一次检查（此时新数据已经refresh可见）时再加一，
+ * 旧代数的缓存不会再被命中，之后随过期或容量淘汰。所有实例看到的是同一个索引，因此会一起失效。
+ */
+@Slf4j
+@Component
+public class FilterCache {
+
+    private static final String STATS_ENDPOINT = "/items/_stats/indexing";
+
+    private final RestHighLevelClient client;
+    private final Cache<String, Map<String, List<String>>> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private long lastWrites = -1;
+    private boolean pendingRefresh;
+
+    public FilterCache(RestHighLevelClient client, SearchProperties searchProperties,
+                       ObjectProvider<MeterRegistry> registry) {
+        this.client = client;
+        SearchProperties.FilterCache config = searchProperties.getFilterCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        registry.ifAvailable(r -> CaffeineCacheMetrics.monitor(r, cache, "search-filters"));
+    }
+
+    public Map<String, List<String>> get(ItemPageQuery query, Supplier<Map<String, List<String>>> loader) {
+        return cache.get(key(query), k -> loader.get());
+    }
+
+    @Scheduled(fixedDelayString = "${hm.search.filter-cache.generation-poll-interval:1000}")
+    public void pollGeneration() {
+        long writes;
+        try {
+            Response response = client.getLowLevelClient().performRequest(new Request("GET", STATS_ENDPOINT));
+            JSONObject indexing = JSONUtil.parseObj(EntityUtils.toString(response.getEntity()))
+                    .getByPath("_all.primaries.indexing", JSONObject.class);
+            writes = indexing.getLong("index_total") + indexing.getLong("delete_total");
+        } catch (Exception e) {
+            log.warn("查询索引写入计数失败：{}", e.getMessage());
+            return;
+        }
+        if (writes != lastWrites) {
+            lastWrites = writes;
+            pendingRefresh = true;
+            generation.incrementAndGet();
+        } else if (pendingRefresh) {
+            // 计数变化时新数据可能还没有refresh，再失效一次，避免缓存住旧的结果
+            pendingRefresh = false;
+            generation.incrementAndGet();
+        }
+    }
+
+    private String key(ItemPageQuery query) {
+        return generation.get() + ":" + normalize(query.getKey()) + ":" + normalize(query.getCategory())
+                + ":" + normalize(query.getBrand()) + ":" + query.getMinPrice() + ":" + query.getMaxPrice();
+    }
+
+    /**
+     * 关键字经过分词器后不区分大小写，首尾和连续的空白也不影响结果
+     */
+    private static String normalize(String value) {
+        if (StrUtil.isBlank(value)) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+}
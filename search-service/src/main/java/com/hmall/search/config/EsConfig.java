@@ -0,0 +1,119 @@
+package com.hmall.search.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpCoreContext;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.BindResult;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Configuration
+@EnableScheduling
+public class EsConfig {
+
+    private static final String START_TIME = "hm.es.startTime";
+    /**
+     * 旧版本的elasticsearch地址配置，已改为hm.es.hosts
+     */
+    private static final String LEGACY_HOSTS = "hm.search.hosts";
+
+    @Bean(destroyMethod = "close")
+    public RestHighLevelClient restHighLevelClient(EsProperties esProperties, ObjectProvider<MeterRegistry> registry,
+                                                   Environment environment) {
+        HttpHost[] hosts = resolveHosts(esProperties, environment).stream().map(HttpHost::create).toArray(HttpHost[]::new);
+        RestClientBuilder builder = RestClient.builder(hosts)
+                .setCompressionEnabled(esProperties.getCompression())
+                .setRequestConfigCallback(config -> config
+                        .setConnectTimeout((int) esProperties.getConnectTimeout().toMillis())
+                        .setSocketTimeout((int) esProperties.getSocketTimeout().toMillis()))
+                .setHttpClientConfigCallback(httpClient -> {
+                    httpClient.setMaxConnTotal(esProperties.getMaxConnTotal())
+                            .setMaxConnPerRoute(esProperties.getMaxConnPerRoute())
+                            .setKeepAliveStrategy((response, context) -> esProperties.getKeepAlive().toMillis())
+                            .setDefaultIOReactorConfig(IOReactorConfig.custom()
+                                    .setIoThreadCount(esProperties.getIoThreadCount())
+                                    .setSoKeepAlive(true)
+                                    .build());
+                    MeterRegistry meterRegistry = registry.getIfAvailable();
+                    if (meterRegistry != null) {
+                        httpClient.addInterceptorLast(startTimer())
+                                .addInterceptorLast(stopTimer(meterRegistry));
+                    }
+                    return httpClient;
+                });
+        return new RestHighLevelClient(builder);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "hm.es", name = "sniff", havingValue = "true")
+    public Sniffer sniffer(RestHighLevelClient client, EsProperties esProperties) {
+        return Sniffer.builder(client.getLowLevelClient())
+                .setSniffIntervalMillis((int) esProperties.getSniffInterval().toMillis())
+                .build();
+    }
+
+    /**
+     * 没有配置hm.es.hosts时兼容旧的hm.search.hosts，避免已有的配置在升级后静默回退到默认地址
+     */
+    private static List<String> resolveHosts(EsProperties esProperties, Environment environment) {
+        Binder binder = Binder.get(environment);
+        if (binder.bind("hm.es.hosts", Bindable.listOf(String.class)).isBound()) {
+            return esProperties.getHosts();
+        }
+        BindResult<List<String>> legacy = binder.bind(LEGACY_HOSTS, Bindable.listOf(String.class));
+        if (legacy.isBound()) {
+            log.warn("{}已废弃，请改为配置hm.es.hosts", LEGACY_HOSTS);
+            return legacy.get();
+        }
+        return esProperties.getHosts();
+    }
+
+    /**
+     * 请求发出前记录开始时间
+     */
+    private static HttpRequestInterceptor startTimer() {
+        return (request, context) -> context.setAttribute(START_TIME, System.nanoTime());
+    }
+
+    /**
+     * 收到响应后记录耗时，指标名称为es.client.requests，按请求方法和响应码区分
+     */
+    private static HttpResponseInterceptor stopTimer(MeterRegistry meterRegistry) {
+        return (response, context) -> {
+            Object startTime = context.getAttribute(START_TIME);
+            if (startTime == null) {
+                return;
+            }
+            Object request = context.getAttribute(HttpCoreContext.HTTP_REQUEST);
+            String method = request instanceof HttpRequest
+                    ? ((HttpRequest) request).getRequestLine().getMethod() : "UNKNOWN";
+            Timer.builder("es.client.requests")
+                    .description("elasticsearch客户端请求耗时")
+                    .tag("method", method)
+                    .tag("status", String.valueOf(response.getStatusLine().getStatusCode()))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - (Long) startTime, TimeUnit.NANOSECONDS);
+        };
+    }
+}
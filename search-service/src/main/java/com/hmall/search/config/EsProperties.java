@@ -0,0 +1,55 @@
+package com.hmall.search.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.es")
+public class EsProperties {
+    /**
+     * elasticsearch地址，可以配置多个，例如http://127.0.0.1:9200。
+     * 没有配置时兼容旧的hm.search.hosts
+     */
+    private List<String> hosts = List.of("http://127.0.0.1:9200");
+    /**
+     * 连接池的最大连接数
+     */
+    private Integer maxConnTotal = 100;
+    /**
+     * 每个节点的最大连接数
+     */
+    private Integer maxConnPerRoute = 50;
+    /**
+     * IO线程数，默认为CPU核数
+     */
+    private Integer ioThreadCount = Runtime.getRuntime().availableProcessors();
+    /**
+     * 建立连接的超时时间
+     */
+    private Duration connectTimeout = Duration.ofSeconds(1);
+    /**
+     * 等待响应的超时时间
+     */
+    private Duration socketTimeout = Duration.ofSeconds(30);
+    /**
+     * 空闲连接的保活时间，应小于服务端和中间负载均衡的空闲超时
+     */
+    private Duration keepAlive = Duration.ofMinutes(1);
+    /**
+     * 是否压缩请求体并接受压缩的响应
+     */
+    private Boolean compression = false;
+    /**
+     * 是否定期嗅探集群节点，ES前面有负载均衡时不要开启
+     */
+    private Boolean sniff = false;
+    /**
+     * 嗅探节点的间隔
+     */
+    private Duration sniffInterval = Duration.ofMinutes(5);
+}
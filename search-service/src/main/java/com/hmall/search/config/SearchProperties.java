@@ -0,0 +1,41 @@
+package com.hmall.search.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.search")
+public class SearchProperties {
+    /**
+     * 商品变更的合并窗口，单位毫秒，窗口内同一商品的多次变更只同步一次
+     */
+    private Long syncWindow = 500L;
+    /**
+     * 单个bulk请求最多包含的商品数量
+     */
+    private Integer syncBatchSize = 500;
+    /**
+     * 过滤项的结果缓存
+     */
+    private FilterCache filterCache = new FilterCache();
+
+    @Data
+    public static class FilterCache {
+        /**
+         * 最多缓存的查询条件数量
+         */
+        private Long maximumSize = 1000L;
+        /**
+         * 写入后的过期时间
+         */
+        private Duration expireAfterWrite = Duration.ofSeconds(60);
+        /**
+         * 检查索引是否有写入的间隔，单位毫秒，应不小于索引的refresh_interval
+         */
+        private Long generationPollInterval = 1000L;
+    }
+}
@@ -3,23 +3,25 @@ package com.hmall.search.controller;
 
 import cn.hutool.core.util.StrUtil;
 
+import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.metadata.OrderItem;
 import com.hmall.common.domain.PageDTO;
+import com.hmall.common.exception.BadRequestException;
 
+import com.hmall.search.cache.FilterCache;
 import com.hmall.search.domain.dto.ItemDTO;
 import com.hmall.search.domain.po.ItemDoc;
 import com.hmall.search.domain.query.ItemPageQuery;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.http.HttpHost;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.lucene.search.function.CombineFunction;
 import org.elasticsearch.index.query.BoolQueryBuilder;
@@ -40,7 +42,11 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,18 +55,18 @@ import java.util.stream.Collectors;
 
 @Api(tags = "搜索相关接口")
 @Slf4j
+@RequiredArgsConstructor
 @RestController
 @RequestMapping("/search")
 public class SearchController {
 
     private final RestHighLevelClient client;
+    private final FilterCache filterCache;
     private final static String ES_ITEMS_INDEX = "items";
-
-    public SearchController() {
-        this.client = new RestHighLevelClient(RestClient.builder(
-                HttpHost.create("http://vm2.lan.luoxianjun.com:9200")
-        ));
-    }
+    /**
+     * ES默认的max_result_window，超过后只能使用游标翻页
+     */
+    private final static int MAX_RESULT_WINDOW = 10000;
 
 
     /**
@@ -123,11 +129,20 @@ public class SearchController {
         // 填充额外的查询参数
         fillQueryArg(query, queryBuilder);
 
-        // 设置搜索请求的查询条件和分页信息
+        // 设置搜索请求的查询条件和分页信息，传了游标时使用search_after，否则使用from/size
         searchRequest
                 .source()
                 .query(queryBuilder)
                 .size(query.getPageSize());
+        if (StrUtil.isNotBlank(query.getCursor())) {
+            searchRequest.source().searchAfter(decodeCursor(query.getCursor()));
+        } else {
+            int from = query.from();
+            if (from + query.getPageSize() > MAX_RESULT_WINDOW) {
+                throw new BadRequestException("翻页过深，请使用游标翻页");
+            }
+            searchRequest.source().from(from);
+        }
 
         // 设置搜索结果的排序条件
         List<OrderItem> orders = query.toMpPage().orders();
@@ -138,6 +153,8 @@ public class SearchController {
         // 在所有自定义排序条件后，追加默认的得分排序（降序）
         searchRequest.source()
                 .sort(SortBuilders.scoreSort().order(SortOrder.DESC));
+        // 最后按id排序，保证排序值唯一，search_after才不会漏掉或重复数据
+        searchRequest.source().sort("id", SortOrder.ASC);
 
         // 执行搜索请求
         SearchResponse response = client.search(searchRequest, RequestOptions.DEFAULT);
@@ -150,7 +167,7 @@ public class SearchController {
         }
 
         // 计算总页数
-        long pages = query.getPageNo();
+        long pages = (total + query.getPageSize() - 1) / query.getPageSize();
 
         // 解析搜索结果，转换为商品文档对象
         SearchHit[] searchHits = hits.getHits();
@@ -161,13 +178,52 @@ public class SearchController {
             }
         }
 
+        // 本页是满的，用最后一条数据的排序值作为下一页的游标
+        String next = null;
+        if (searchHits != null && searchHits.length == query.getPageSize()) {
+            next = encodeCursor(searchHits[searchHits.length - 1].getSortValues());
+        }
+
         // 返回搜索结果的分页信息
-        return new PageDTO<>(total, pages, itemDocs);
+        return new PageDTO<>(total, pages, itemDocs, next);
+    }
+
+    /**
+     * 游标是排序值数组的JSON经过base64编码，对前端不透明
+     */
+    private static String encodeCursor(Object[] sortValues) {
+        String json = JSONUtil.toJsonStr(sortValues);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object[] decodeCursor(String cursor) {
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            JSONArray array = JSONUtil.parseArray(json);
+            Object[] sortValues = new Object[array.size()];
+            for (int i = 0; i < sortValues.length; i++) {
+                Object value = array.get(i);
+                // JSON解析出的小数是BigDecimal，转换为ES能直接序列化的类型
+                if (value instanceof BigDecimal || value instanceof Double || value instanceof Float) {
+                    value = ((Number) value).doubleValue();
+                } else if (value instanceof Number) {
+                    value = ((Number) value).longValue();
+                }
+                sortValues[i] = value;
+            }
+            return sortValues;
+        } catch (Exception e) {
+            throw new BadRequestException("非法的分页游标", e);
+        }
     }
 
     @PostMapping("/filters")
-    public Map<String, List<String>> filters(ItemPageQuery query) throws IOException {
+    public Map<String, List<String>> filters(ItemPageQuery query) {
+        // 过滤项只和查询条件有关，热门的条件直接从缓存返回
+        return filterCache.get(query, () -> aggregateFilters(query));
+    }
 
+    private Map<String, List<String>> aggregateFilters(ItemPageQuery query) {
         SearchRequest searchRequest = new SearchRequest("items");
         BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery();
 
@@ -178,11 +234,18 @@ public class SearchController {
 
         String categoryAgg = "category_agg";
         String brandAgg = "brand_agg";
-        searchRequest.source().query(queryBuilder).aggregation(
+        // 只需要聚合结果，size(0)不返回文档，并且可以命中分片级的请求缓存
+        searchRequest.requestCache(true);
+        searchRequest.source().query(queryBuilder).size(0).aggregation(
                         AggregationBuilders.terms(categoryAgg).field("category"))
                 .aggregation(AggregationBuilders.terms(brandAgg).field("brand"));
 
-        SearchResponse response = client.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResponse response;
+        try {
+            response = client.search(searchRequest, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
         Map<String, List<String>> resultMap = new HashMap<>();
         Terms terms = response.getAggregations().get(categoryAgg);
@@ -0,0 +1,29 @@
+package com.hmall.search.listener;
+
+import com.hmall.common.constants.ItemMqConstants;
+import com.hmall.search.sync.ItemDocSyncer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class ItemChangeListener {
+
+    private final ItemDocSyncer itemDocSyncer;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = "search.item.sync.queue", durable = "true"),
+            exchange = @Exchange(value = ItemMqConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMqConstants.ALL_KEY
+    ))
+    public void listenItemChanged(List<Long> itemIds) {
+        itemDocSyncer.submit(itemIds);
+    }
+}
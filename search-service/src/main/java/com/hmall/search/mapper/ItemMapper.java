@@ -0,0 +1,7 @@
+package com.hmall.search.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmall.search.domain.po.Item;
+
+public interface ItemMapper extends BaseMapper<Item> {
+}
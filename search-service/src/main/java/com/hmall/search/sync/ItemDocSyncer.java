@@ -0,0 +1,116 @@
+package com.hmall.search.sync;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmall.search.config.SearchProperties;
+import com.hmall.search.domain.po.Item;
+import com.hmall.search.domain.po.ItemDoc;
+import com.hmall.search.mapper.ItemMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 把商品变更增量同步到索引库。
+ * <p>
+ * 变更消息只携带商品id，先在内存中按id去重，每个窗口结束时从数据库读取最新数据，
+ * 以bulk请求批量写入：上架商品做部分更新（不存在时插入），下架、删除的商品从索引中删除。
+ * 写入失败的商品放回待同步集合，下个窗口重试。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemDocSyncer {
+
+    public static final String INDEX_NAME = "items";
+
+    private final RestHighLevelClient client;
+    private final ItemMapper itemMapper;
+    private final SearchProperties searchProperties;
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    public void submit(Collection<Long> itemIds) {
+        pending.addAll(itemIds);
+    }
+
+    @Scheduled(fixedDelayString = "${hm.search.sync-window:500}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // 1.取出当前窗口内的商品，之后到达的变更进入下个窗口
+        List<Long> itemIds = new ArrayList<>(pending.size());
+        for (Iterator<Long> it = pending.iterator(); it.hasNext(); ) {
+            itemIds.add(it.next());
+            it.remove();
+        }
+        // 2.分批同步
+        int batchSize = searchProperties.getSyncBatchSize();
+        for (int from = 0; from < itemIds.size(); from += batchSize) {
+            List<Long> batch = itemIds.subList(from, Math.min(from + batchSize, itemIds.size()));
+            try {
+                sync(batch);
+            } catch (Exception e) {
+                log.error("同步商品到索引库失败，稍后重试，商品数量：{}", batch.size(), e);
+                pending.addAll(batch);
+            }
+        }
+    }
+
+    private void sync(List<Long> itemIds) throws IOException {
+        // 1.查询最新的商品数据
+        Map<Long, Item> items = itemMapper.selectBatchIds(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        // 2.组织bulk请求
+        BulkRequest request = new BulkRequest();
+        for (Long itemId : itemIds) {
+            Item item = items.get(itemId);
+            if (item == null || !Objects.equals(item.getStatus(), 1)) {
+                request.add(new DeleteRequest(INDEX_NAME, itemId.toString()));
+                continue;
+            }
+            ItemDoc itemDoc = BeanUtil.copyProperties(item, ItemDoc.class);
+            request.add(new UpdateRequest(INDEX_NAME, itemId.toString())
+                    .doc(JSONUtil.toJsonStr(itemDoc), XContentType.JSON)
+                    .docAsUpsert(true));
+        }
+        // 3.发送请求，只重试限流和服务端错误，其它错误重试也不会成功
+        BulkResponse response = client.bulk(request, RequestOptions.DEFAULT);
+        if (!response.hasFailures()) {
+            log.debug("同步商品到索引库，商品数量：{}", itemIds.size());
+            return;
+        }
+        for (BulkItemResponse itemResponse : response.getItems()) {
+            if (!itemResponse.isFailed()) {
+                continue;
+            }
+            RestStatus status = itemResponse.getFailure().getStatus();
+            if (status == RestStatus.TOO_MANY_REQUESTS || status.getStatus() >= 500) {
+                pending.add(Long.valueOf(itemResponse.getId()));
+            }
+            log.error("同步商品{}到索引库失败：{}", itemResponse.getId(), itemResponse.getFailureMessage());
+        }
+    }
+}
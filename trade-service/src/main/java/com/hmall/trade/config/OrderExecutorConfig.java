@@ -0,0 +1,63 @@
+package com.hmall.trade.config;
+
+import com.hmall.common.utils.UserContext;
+import io.seata.core.context.RootContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class OrderExecutorConfig {
+
+    /**
+     * 下单流程中并行执行的远程调用和消息发送使用的有界线程池
+     */
+    @Bean
+    public ThreadPoolTaskExecutor orderExecutor(TradeProperties tradeProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(tradeProperties.getExecutorCoreSize());
+        executor.setMaxPoolSize(tradeProperties.getExecutorMaxSize());
+        executor.setQueueCapacity(tradeProperties.getExecutorQueueCapacity());
+        executor.setThreadNamePrefix("order-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(contextPropagatingDecorator());
+        return executor;
+    }
+
+    /**
+     * 把当前用户和Seata全局事务id传递到线程池中，Feign调用依赖它们传递用户信息和加入全局事务。
+     * 队列满时任务由调用线程执行，执行完需要恢复调用线程原来的上下文
+     */
+    private static TaskDecorator contextPropagatingDecorator() {
+        return runnable -> {
+            Long userId = UserContext.getUser();
+            String xid = RootContext.getXID();
+            return () -> {
+                Long previousUserId = UserContext.getUser();
+                String previousXid = RootContext.getXID();
+                bind(userId, xid);
+                try {
+                    runnable.run();
+                } finally {
+                    bind(previousUserId, previousXid);
+                }
+            };
+        };
+    }
+
+    private static void bind(Long userId, String xid) {
+        if (userId != null) {
+            UserContext.setUser(userId);
+        } else {
+            UserContext.removeUser();
+        }
+        if (xid != null) {
+            RootContext.bind(xid);
+        } else {
+            RootContext.unbind();
+        }
+    }
+}
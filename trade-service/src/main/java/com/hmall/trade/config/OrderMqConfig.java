@@ -0,0 +1,52 @@
+package com.hmall.trade.config;
+
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class OrderMqConfig {
+
+    /**
+     * 批量消费支付超时延迟消息的监听容器，最多等待delayReceiveTimeout凑满一批，处理完成后整批确认
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory orderDelayContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            TradeProperties tradeProperties) {
+        return batchFactory(configurer, connectionFactory,
+                tradeProperties.getDelayBatchSize(), tradeProperties.getDelayReceiveTimeout());
+    }
+
+    /**
+     * 批量消费支付成功消息的监听容器
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory paySuccessContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            TradeProperties tradeProperties) {
+        return batchFactory(configurer, connectionFactory,
+                tradeProperties.getPaySuccessBatchSize(), tradeProperties.getPaySuccessReceiveTimeout());
+    }
+
+    private static SimpleRabbitListenerContainerFactory batchFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            int batchSize, Duration receiveTimeout) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeout.toMillis());
+        // 预取数量小于批大小时，每批都要等到receiveTimeout才能凑满
+        factory.setPrefetchCount(Math.max(batchSize, 250));
+        return factory;
+    }
+}
@@ -0,0 +1,11 @@
+package com.hmall.trade.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(prefix = "hm.trade.timeout", name = "enabled", havingValue = "true")
+public class OrderTimeoutConfig {
+}
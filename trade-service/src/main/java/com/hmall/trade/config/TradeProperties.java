@@ -0,0 +1,93 @@
+package com.hmall.trade.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.trade")
+public class TradeProperties {
+    /**
+     * 下单的分布式事务模式：seata-Seata AT全局事务，saga-本地提交加失败补偿
+     */
+    private String txMode = "seata";
+    /**
+     * 下单线程池的核心线程数
+     */
+    private Integer executorCoreSize = 8;
+    /**
+     * 下单线程池的最大线程数
+     */
+    private Integer executorMaxSize = 32;
+    /**
+     * 下单线程池的队列长度，队列满时由调用线程执行
+     */
+    private Integer executorQueueCapacity = 1000;
+    /**
+     * 批量消费支付超时延迟消息时，每批最多的消息数量
+     */
+    private Integer delayBatchSize = 100;
+    /**
+     * 批量消费支付超时延迟消息时，凑批的最长等待时间
+     */
+    private Duration delayReceiveTimeout = Duration.ofMillis(20);
+    /**
+     * 超时订单取消失败后，重新投递延迟消息的延迟时间
+     */
+    private Duration delayRetryDelay = Duration.ofSeconds(10);
+    /**
+     * 批量消费支付成功消息时，每批最多的消息数量
+     */
+    private Integer paySuccessBatchSize = 100;
+    /**
+     * 批量消费支付成功消息时，凑批的最长等待时间
+     */
+    private Duration paySuccessReceiveTimeout = Duration.ofMillis(20);
+    /**
+     * 记录最近处理过的支付成功订单数量，用于过滤重复投递的消息
+     */
+    private Integer paySuccessDedupeSize = 10000;
+    /**
+     * 订单支付超时检查
+     */
+    private Timeout timeout = new Timeout();
+
+    @Data
+    public static class Timeout {
+        /**
+         * 是否使用时间轮检查支付超时，关闭时每个订单发送一条延迟消息
+         */
+        private Boolean enabled = false;
+        /**
+         * 从下单时间起的检查阶段，前面的阶段只同步支付状态，最后一个阶段仍未支付则取消订单
+         */
+        private List<Duration> stages = new ArrayList<>(Arrays.asList(
+                Duration.ofSeconds(10), Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofMinutes(30)));
+        /**
+         * 时间轮每格的时间，也是检查到期订单的间隔
+         */
+        private Duration tick = Duration.ofSeconds(1);
+        /**
+         * 时间轮每层的格子数
+         */
+        private Integer wheelSize = 64;
+        /**
+         * 每批检查的订单数量
+         */
+        private Integer batchSize = 200;
+        /**
+         * 检查失败后的重试间隔
+         */
+        private Duration retryDelay = Duration.ofSeconds(10);
+        /**
+         * 从数据库恢复待检查订单的间隔，单位毫秒
+         */
+        private Long recoveryInterval = 60000L;
+    }
+}
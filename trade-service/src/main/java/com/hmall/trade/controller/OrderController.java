@@ -4,6 +4,7 @@ import com.hmall.common.utils.BeanUtils;
 
 import com.hmall.trade.domain.dto.OrderFormDTO;
 import com.hmall.trade.domain.vo.OrderVO;
+import com.hmall.trade.placement.OrderPlacement;
 import com.hmall.trade.service.IOrderService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
@@ -18,6 +19,7 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class OrderController {
     private final IOrderService orderService;
+    private final OrderPlacement orderPlacement;
 
     @ApiOperation("根据id查询订单")
     @GetMapping("{id}")
@@ -28,7 +30,7 @@ public class OrderController {
     @ApiOperation("创建订单")
     @PostMapping
     public Long createOrder(@RequestBody OrderFormDTO orderFormDTO) {
-        return orderService.createOrder(orderFormDTO);
+        return orderPlacement.createOrder(orderFormDTO);
     }
 
     @ApiOperation("标记订单已支付")
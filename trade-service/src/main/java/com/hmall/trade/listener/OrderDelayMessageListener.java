@@ -1,53 +1,107 @@
 package com.hmall.trade.listener;
 
 
-import com.hmall.api.clients.PayClient;
-import com.hmall.api.domain.dto.PayOrderDTO;
+import com.hmall.trade.config.TradeProperties;
 import com.hmall.trade.constants.MqConstants;
 import com.hmall.trade.domain.po.Order;
+import com.hmall.trade.placement.OrderPlacement;
 import com.hmall.trade.service.IOrderService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class OrderDelayMessageListener {
 
     private final IOrderService orderService;
-    private final PayClient payClient;
+    private final OrderPlacement orderPlacement;
+    private final MessageConverter messageConverter;
+    private final RabbitTemplate rabbitTemplate;
+    private final TradeProperties tradeProperties;
 
     /**
-     * 监听延迟队列中的订单支付延迟消息。
-     * 该方法用于处理因支付超时而需要延迟处理的订单。通过监听MQ中的特定消息，
-     * 对应的订单状态进行更新，以确保订单处理的及时性和正确性。
+     * 批量监听订单支付超时的延迟消息。
+     * 同一批到期的订单只查询一次支付服务，已支付的订单用一条update标记为已支付，
+     * 其余仍未支付的订单在一个分布式事务中整批取消：一条update取消订单，一次关闭支付单，一次按订单归还库存。
+     * 消息体无法解析的消息记录日志后跳过，不影响同一批的其他消息。
+     * 取消失败时把这批订单重新发送为延迟消息，延迟delayRetryDelay后再检查，原消息正常确认，
+     * 避免整批立即重新入队反复失败；已处理过的订单状态不再是待支付，不会重复处理。
      *
-     * @param orderId 订单ID，用于根据ID查询和操作订单。
+     * @param messages 延迟消息，消息体是订单id
      */
     @RabbitListener(bindings = @QueueBinding(
             value = @Queue(name = MqConstants.DELAY_ORDER_QUEUE_NAME),
             exchange = @Exchange(name = MqConstants.DELAY_EXCHANGE_NAME, delayed = "true"),
             key = MqConstants.DELAY_ORDER_KEY
-    ))
-    public void listenOrderDelayMessage(Long orderId) {
-        // 根据订单ID查询订单信息
-        Order order = orderService.getById(orderId);
-        // 如果订单不存在或订单状态不是待支付，则直接返回
-        if (order == null || order.getStatus() != 1) {
+    ), containerFactory = "orderDelayContainerFactory")
+    public void listenOrderDelayMessage(List<Message> messages) {
+        Set<Long> orderIds = new LinkedHashSet<>(messages.size());
+        for (Message message : messages) {
+            Long orderId = parseOrderId(message);
+            if (orderId != null) {
+                orderIds.add(orderId);
+            }
+        }
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        // 1.批量同步支付状态，返回仍未支付的订单
+        List<Order> unpaid = orderService.syncPayStatus(orderIds);
+        if (unpaid.isEmpty()) {
             return;
         }
-        // 查询支付订单信息
-        PayOrderDTO payOrder = payClient.queryPayOrderByBizOrderNo(orderId);
-        // 如果支付订单存在且支付状态为已支付，则标记订单支付成功
-        if (payOrder != null && payOrder.getStatus() == 3) {
-            orderService.markOrderPaySuccess(orderId);
-        } else {
-            // 否则，取消订单
-            orderService.cancelOrder(orderId);
+        // 2.整批取消未支付的订单
+        List<Long> unpaidIds = unpaid.stream().map(Order::getId).collect(Collectors.toList());
+        List<Long> cancelled;
+        try {
+            cancelled = orderPlacement.cancelOrders(unpaidIds);
+        } catch (Exception e) {
+            log.error("超时订单取消失败，{}后重试，订单：{}", tradeProperties.getDelayRetryDelay(), unpaidIds, e);
+            retryLater(unpaidIds);
+            return;
+        }
+        log.debug("支付超时订单处理完成，消息数量：{}，取消订单数量：{}", messages.size(), cancelled.size());
+    }
+
+    private Long parseOrderId(Message message) {
+        try {
+            Object body = messageConverter.fromMessage(message);
+            if (body instanceof Number) {
+                return ((Number) body).longValue();
+            }
+            log.error("支付超时消息的消息体不是订单id，已丢弃：{}", body);
+        } catch (Exception e) {
+            log.error("支付超时消息解析失败，已丢弃：{}", message, e);
+        }
+        return null;
+    }
+
+    /**
+     * 重新发送延迟消息，发送失败时抛出异常，整批消息重新入队
+     */
+    private void retryLater(List<Long> orderIds) {
+        int delay = (int) tradeProperties.getDelayRetryDelay().toMillis();
+        for (Long orderId : orderIds) {
+            rabbitTemplate.convertAndSend(MqConstants.DELAY_EXCHANGE_NAME, MqConstants.DELAY_ORDER_KEY, orderId,
+                    message -> {
+                        message.getMessageProperties().setDelay(delay);
+                        return message;
+                    });
         }
     }
 
-}
\ No newline at end of file
+}
@@ -1,29 +1,98 @@
 package com.hmall.trade.listener;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.trade.config.TradeProperties;
 import com.hmall.trade.service.IOrderService;
-import com.hmall.trade.service.impl.OrderServiceImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
 @Component
 public class PayStatusListener {
 
     private final IOrderService orderService;
+    private final MessageConverter messageConverter;
+    /**
+     * 最近已经处理过的订单id，重复投递的消息直接跳过，不再访问数据库
+     */
+    private final Cache<Long, Boolean> handled;
+    private final Counter updatedCounter;
+    private final Counter noopCounter;
+    private final Counter duplicateCounter;
 
-    public PayStatusListener(OrderServiceImpl orderServiceImpl) {
-        this.orderService = orderServiceImpl;
+    public PayStatusListener(IOrderService orderService, MessageConverter messageConverter,
+                             TradeProperties tradeProperties, ObjectProvider<MeterRegistry> registry) {
+        this.orderService = orderService;
+        this.messageConverter = messageConverter;
+        this.handled = Caffeine.newBuilder()
+                .maximumSize(tradeProperties.getPaySuccessDedupeSize())
+                .build();
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        this.updatedCounter = counter(meterRegistry, "updated");
+        this.noopCounter = counter(meterRegistry, "noop");
+        this.duplicateCounter = counter(meterRegistry, "duplicate");
     }
 
+    /**
+     * 批量消费支付成功消息，整批订单用一条update标记为已支付。
+     * 只更新待支付的订单，已支付（重复消息）或已取消的订单不受影响，计为noop。
+     */
     @RabbitListener(bindings = @QueueBinding(
             value = @Queue(name = "trade.pay.success.queue", durable = "true"),
             exchange = @Exchange(value = "pay.direct", type = "direct"),
             key = "pay.success"
-    ))
-    public void listenerPaySuccess(Long orderId) {
-        orderService.markOrderPaySuccess(orderId);
+    ), containerFactory = "paySuccessContainerFactory")
+    public void listenerPaySuccess(List<Message> messages) {
+        // 1.批内去重，并跳过最近已经处理过的订单
+        Set<Long> orderIds = new LinkedHashSet<>(messages.size());
+        int duplicates = 0;
+        for (Message message : messages) {
+            Long orderId = ((Number) messageConverter.fromMessage(message)).longValue();
+            if (handled.getIfPresent(orderId) != null || !orderIds.add(orderId)) {
+                duplicates++;
+            }
+        }
+        increment(duplicateCounter, duplicates);
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        // 2.一条update标记整批订单
+        int updated = orderService.markOrdersPaySuccess(orderIds);
+        orderIds.forEach(orderId -> handled.put(orderId, Boolean.TRUE));
+        increment(updatedCounter, updated);
+        increment(noopCounter, orderIds.size() - updated);
+        log.debug("支付成功消息处理完成，消息数量：{}，更新：{}，无需更新：{}，重复：{}",
+                messages.size(), updated, orderIds.size() - updated, duplicates);
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        if (registry == null) {
+            return null;
+        }
+        return Counter.builder("hm.trade.pay.success")
+                .description("支付成功消息的处理结果")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static void increment(Counter counter, int amount) {
+        if (counter != null && amount > 0) {
+            counter.increment(amount);
+        }
     }
 
 }
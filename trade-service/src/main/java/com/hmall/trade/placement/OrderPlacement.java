@@ -0,0 +1,24 @@
+package com.hmall.trade.placement;
+
+import com.hmall.trade.domain.dto.OrderFormDTO;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 下单和取消订单的分布式事务入口，由hm.trade.tx-mode选择实现：
+ * seata-使用Seata AT全局事务，saga-不开启全局事务，各服务本地提交，失败时执行补偿。
+ */
+public interface OrderPlacement {
+
+    Long createOrder(OrderFormDTO orderFormDTO);
+
+    void cancelOrder(Long orderId);
+
+    /**
+     * 批量取消订单，整批在同一个分布式事务中处理
+     *
+     * @return 本次取消的订单id
+     */
+    List<Long> cancelOrders(Collection<Long> orderIds);
+}
@@ -0,0 +1,40 @@
+package com.hmall.trade.placement;
+
+import com.hmall.trade.domain.dto.OrderFormDTO;
+import com.hmall.trade.service.IOrderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 以Saga方式下单和取消订单，不开启全局事务，没有全局锁和undo log。
+ * <p>
+ * 下单：扣减库存（商品服务本地提交）→ 本地事务保存订单、明细和消息 → 提交即确认，订单进入待支付；
+ * 保存失败时调用restoreStock补偿。
+ * 取消：先把订单改为已取消 → 关闭支付单 → 归还库存；后两步失败时把订单改回待支付，等待下一次取消重试。
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "hm.trade", name = "tx-mode", havingValue = "saga")
+public class SagaOrderPlacement implements OrderPlacement {
+
+    private final IOrderService orderService;
+
+    @Override
+    public Long createOrder(OrderFormDTO orderFormDTO) {
+        return orderService.createOrder(orderFormDTO);
+    }
+
+    @Override
+    public void cancelOrder(Long orderId) {
+        orderService.cancelOrder(orderId);
+    }
+
+    @Override
+    public List<Long> cancelOrders(Collection<Long> orderIds) {
+        return orderService.cancelOrders(orderIds);
+    }
+}
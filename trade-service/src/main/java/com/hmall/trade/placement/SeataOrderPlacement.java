@@ -0,0 +1,40 @@
+package com.hmall.trade.placement;
+
+import com.hmall.trade.domain.dto.OrderFormDTO;
+import com.hmall.trade.service.IOrderService;
+import io.seata.spring.annotation.GlobalTransactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 在Seata全局事务中下单和取消订单，任意一步失败时由Seata回滚所有分支
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "hm.trade", name = "tx-mode", havingValue = "seata", matchIfMissing = true)
+public class SeataOrderPlacement implements OrderPlacement {
+
+    private final IOrderService orderService;
+
+    @Override
+    @GlobalTransactional
+    public Long createOrder(OrderFormDTO orderFormDTO) {
+        return orderService.createOrder(orderFormDTO);
+    }
+
+    @Override
+    @GlobalTransactional
+    public void cancelOrder(Long orderId) {
+        orderService.cancelOrder(orderId);
+    }
+
+    @Override
+    @GlobalTransactional
+    public List<Long> cancelOrders(Collection<Long> orderIds) {
+        return orderService.cancelOrders(orderIds);
+    }
+}
@@ -4,6 +4,9 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmall.trade.domain.dto.OrderFormDTO;
 import com.hmall.trade.domain.po.Order;
 
+import java.util.Collection;
+import java.util.List;
+
 
 /**
  * <p>
@@ -19,5 +22,30 @@ public interface IOrderService extends IService<Order> {
 
     void markOrderPaySuccess(Long orderId);
 
+    /**
+     * 批量标记订单已支付，只更新仍是待支付的订单，已支付或已取消的订单不受影响
+     *
+     * @param orderIds 订单id
+     * @return 实际更新的订单数量
+     */
+    int markOrdersPaySuccess(Collection<Long> orderIds);
+
     void cancelOrder(Long orderId);
+
+    /**
+     * 批量取消订单：锁定仍待支付的订单并用一条update改为已取消，
+     * 再一次关闭这些订单的支付单、一次按订单归还库存
+     *
+     * @param orderIds 订单id
+     * @return 本次取消的订单id，已支付或已取消的订单不包含在内
+     */
+    List<Long> cancelOrders(Collection<Long> orderIds);
+
+    /**
+     * 批量同步待支付订单的支付状态：一次查询支付服务，已支付的订单用一条update标记为已支付
+     *
+     * @param orderIds 订单id
+     * @return 仍未支付的订单
+     */
+    List<Order> syncPayStatus(Collection<Long> orderIds);
 }
@@ -1,11 +1,18 @@
 package com.hmall.trade.service.impl;
 
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmall.api.cache.ItemClientCache;
 import com.hmall.api.clients.ItemClient;
 import com.hmall.api.clients.PayClient;
 import com.hmall.api.domain.dto.ItemDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.PayOrderDTO;
+import com.hmall.api.domain.dto.StockResultDTO;
 import com.hmall.common.exception.BadRequestException;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.outbox.OutboxPublisher;
 import com.hmall.common.utils.UserContext;
 
 import com.hmall.trade.constants.MqConstants;
@@ -16,18 +23,32 @@ import com.hmall.trade.enums.PayStatus;
 import com.hmall.trade.mapper.OrderMapper;
 import com.hmall.trade.service.IOrderDetailService;
 import com.hmall.trade.service.IOrderService;
-import io.seata.spring.annotation.GlobalTransactional;
+import com.hmall.trade.timeout.OrderTimeoutScheduler;
+import io.seata.core.context.RootContext;
+import io.seata.tm.api.transaction.TransactionHookAdapter;
+import io.seata.tm.api.transaction.TransactionHookManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 
@@ -36,25 +57,37 @@ import java.util.stream.Collectors;
 @Slf4j
 public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements IOrderService {
 
+    /**
+     * 订单支付超时检查的延迟时间
+     */
+    private static final MessagePostProcessor ORDER_DELAY = message -> {
+        message.getMessageProperties().setDelay(10000);
+        return message;
+    };
+
     private final ItemClient itemClient;
+    private final ObjectProvider<ItemClientCache> itemClientCacheProvider;
     private final IOrderDetailService detailService;
     private final RabbitTemplate rabbitTemplate;
     private final PayClient payClient;
+    private final ThreadPoolTaskExecutor orderExecutor;
+    private final ObjectProvider<OutboxPublisher> outboxPublisherProvider;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<OrderTimeoutScheduler> timeoutSchedulerProvider;
 
     /**
      * 创建订单。
-     * 使用全局事务确保订单及相关细节的原子性操作。
+     * 由OrderPlacement决定是否开启全局事务：Seata模式下数据库的变更由全局事务回滚，
+     * Saga模式下库存扣减已经提交；商品服务的预扣减账本不是Seata的分支，
+     * 因此扣减成功后任何一步失败都按订单id调用restoreStock补偿，全局事务中补偿分支与扣减分支一起回滚。
+     * 查询商品信息与扣减库存并行执行，订单和明细在同一个本地事务中保存，消息在事务提交后发送。
      *
      * @param orderFormDTO 订单表单数据传输对象，包含订单信息和详情。
      * @return 创建的订单ID。
      * @throws BadRequestException 如果商品不存在或库存不足，则抛出请求异常。
      */
     @Override
-    @GlobalTransactional
     public Long createOrder(OrderFormDTO orderFormDTO) {
-        // 初始化订单对象
-        Order order = new Order();
-
         // 细化订单详情，统计每个商品的数量
         List<OrderDetailDTO> detailDTOS = orderFormDTO.getDetails();
         Map<Long, Integer> itemNumMap = detailDTOS.stream()
@@ -63,26 +96,58 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         // 获取所有商品ID，用于后续查询商品信息
         Set<Long> itemIds = itemNumMap.keySet();
 
-        // 根据商品ID查询商品信息
-        List<ItemDTO> items = itemClient.queryItemByIds(itemIds);
-        // 检查商品是否存在，如果不存在或查询数量不匹配，则抛出异常
-        if (items == null || items.size() < itemIds.size()) {
-            throw new BadRequestException("商品不存在");
-        }
+        // 根据商品ID查询商品信息，与下面的扣减库存互不依赖，交给线程池并行执行
+        ItemClientCache itemClientCache = itemClientCacheProvider.getIfAvailable();
+        CompletableFuture<List<ItemDTO>> itemsFuture = CompletableFuture.supplyAsync(() -> itemClientCache != null
+                ? itemClientCache.queryItemByIds(itemIds) : itemClient.queryItemByIds(itemIds), orderExecutor);
 
-        // 计算订单总金额
-        int total = 0;
-        for (ItemDTO item : items) {
-            total += item.getPrice() * itemNumMap.get(item.getId());
-        }
-        order.setTotalFee(total);
-
-        // 设置订单的支付方式、用户ID、状态和创建时间
+        // 初始化订单对象，预先分配订单id
+        Order order = new Order();
+        order.setId(IdWorker.getId());
         order.setPaymentType(orderFormDTO.getPaymentType());
         order.setUserId(UserContext.getUser());
         order.setStatus(1);
         order.setCreateTime(LocalDateTime.now());
 
+        // 先扣减商品库存，库存不足时商品服务只回滚本地事务，订单还没有写入，可以直接失败
+        try {
+            deductStock(order.getId(), detailDTOS);
+        } catch (BadRequestException e) {
+            itemsFuture.cancel(false);
+            throw e;
+        } catch (RuntimeException e) {
+            // 超时等异常时扣减结果未知，按订单补偿：已经扣减的会归还，还没到达的扣减之后会被拒绝
+            itemsFuture.cancel(false);
+            compensateStock(order.getId(), detailDTOS);
+            throw e;
+        }
+
+        try {
+            // 等待商品信息，检查商品是否存在，如果不存在或查询数量不匹配，则抛出异常
+            List<ItemDTO> items = join(itemsFuture);
+            if (items == null || items.size() < itemIds.size()) {
+                throw new BadRequestException("商品不存在");
+            }
+
+            // 计算订单总金额
+            int total = 0;
+            for (ItemDTO item : items) {
+                total += item.getPrice() * itemNumMap.get(item.getId());
+            }
+            order.setTotalFee(total);
+
+            // 订单、明细和消息在同一个本地事务中写入
+            transactionTemplate.executeWithoutResult(status -> saveOrder(order, items, itemNumMap));
+        } catch (RuntimeException e) {
+            compensateStock(order.getId(), detailDTOS);
+            throw e;
+        }
+
+        // 返回创建的订单ID
+        return order.getId();
+    }
+
+    private void saveOrder(Order order, List<ItemDTO> items, Map<Long, Integer> itemNumMap) {
         // 保存订单信息
         save(order);
 
@@ -90,96 +155,273 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         List<OrderDetail> details = buildDetails(order.getId(), items, itemNumMap);
         detailService.saveBatch(details);
 
-        // 尝试扣减商品库存，如果失败，则抛出异常
+        Long userId = order.getUserId();
+        Long orderId = order.getId();
+        Set<Long> itemIds = itemNumMap.keySet();
+        LocalDateTime createTime = order.getCreateTime();
+        OutboxPublisher outboxPublisher = outboxPublisherProvider.getIfAvailable();
+        OrderTimeoutScheduler timeoutScheduler = timeoutSchedulerProvider.getIfAvailable();
+        if (outboxPublisher != null) {
+            // 写入发件箱，随事务一起提交或回滚，由中继异步投递
+            outboxPublisher.send("trade.topic", "order.create", itemIds, orderCreatedHeaders(userId));
+            if (timeoutScheduler == null) {
+                outboxPublisher.send(MqConstants.DELAY_EXCHANGE_NAME, MqConstants.DELAY_ORDER_KEY, orderId, ORDER_DELAY);
+            }
+        }
+        // 事务提交后再发送消息、登记超时检查，回滚的订单不会通知清理购物车，也不会产生超时检查
+        runAfterCommit(() -> {
+            if (outboxPublisher == null) {
+                orderExecutor.execute(() -> sendOrderCreated(userId, itemIds));
+            }
+            if (timeoutScheduler != null) {
+                timeoutScheduler.schedule(orderId, createTime);
+            } else if (outboxPublisher == null) {
+                orderExecutor.execute(() -> sendOrderDelay(orderId));
+            }
+        });
+    }
+
+    /**
+     * 按订单归还已经扣减的库存，补偿失败时只能记录下来人工处理
+     */
+    private void compensateStock(Long orderId, List<OrderDetailDTO> detailDTOS) {
         try {
-            itemClient.deductStock(detailDTOS);
+            itemClient.restoreStock(orderId, detailDTOS);
+            log.info("下单失败，已归还库存，订单id：{}", orderId);
         } catch (Exception e) {
-            throw new RuntimeException("库存不足！");
+            log.error("下单失败且归还库存失败，需要人工处理，订单id：{}，明细：{}", orderId, detailDTOS, e);
         }
+    }
 
-        // 发送消息到RabbitMQ，通知订单创建和延迟任务
+    private void deductStock(Long orderId, List<OrderDetailDTO> detailDTOS) {
+        List<StockResultDTO> stockResults;
         try {
-            // 发送订单创建消息，包含用户信息
-            rabbitTemplate.convertAndSend("trade.topic", "order.create", itemIds, message -> {
-                message.getMessageProperties().setHeader("user_INFO", UserContext.getUser());
-                return message;
+            stockResults = itemClient.deductStock(orderId, detailDTOS);
+        } catch (Exception e) {
+            throw new RuntimeException("扣减库存失败！", e);
+        }
+        for (StockResultDTO result : stockResults) {
+            if (StockResultDTO.SUCCESS.equals(result.getStatus())) {
+                continue;
+            }
+            log.info("下单扣减库存失败，商品id：{}，原因：{}", result.getItemId(), result.getStatus());
+            if (StockResultDTO.INSUFFICIENT.equals(result.getStatus())) {
+                throw new BadRequestException("库存不足！");
+            }
+            // 扣减与查询商品并行，商品不存在时由扣减结果先发现
+            if (StockResultDTO.MISSING.equals(result.getStatus())) {
+                throw new BadRequestException("商品不存在");
+            }
+            // 扣减超时后补偿先到达，订单已经不能再扣减
+            if (StockResultDTO.CANCELLED.equals(result.getStatus())) {
+                throw new BadRequestException("下单超时，请重新下单");
+            }
+            // 无法识别的结果不能当作库存不足，扣减结果未知，由调用方按订单补偿
+            throw new BizIllegalException("扣减库存返回了未知的结果：" + result.getStatus());
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 在当前事务提交后执行，全局事务中使用Seata的事务钩子，本地事务中使用Spring的事务同步，都没有时直接执行
+     */
+    private static void runAfterCommit(Runnable action) {
+        if (RootContext.inGlobalTransaction()) {
+            TransactionHookManager.registerHook(new TransactionHookAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
             });
+        } else {
+            action.run();
+        }
+    }
 
-            // 发送订单支付延迟消息，延迟10秒处理
-            rabbitTemplate.convertAndSend(
-                    MqConstants.DELAY_EXCHANGE_NAME,
-                    MqConstants.DELAY_ORDER_KEY,
-                    order.getId(),
-                    message -> {
-                        message.getMessageProperties().setDelay(10000);
-                        return message;
-                    }
-            );
+    private void sendOrderCreated(Long userId, Set<Long> itemIds) {
+        try {
+            // 发送订单创建消息，包含用户信息
+            rabbitTemplate.convertAndSend("trade.topic", "order.create", itemIds, orderCreatedHeaders(userId));
+        } catch (Exception e) {
+            log.error("rabbitMQ send error {}", e.getMessage());
+        }
+    }
 
+    private void sendOrderDelay(Long orderId) {
+        try {
+            // 发送订单支付延迟消息，延迟10秒处理
+            rabbitTemplate.convertAndSend(MqConstants.DELAY_EXCHANGE_NAME, MqConstants.DELAY_ORDER_KEY, orderId, ORDER_DELAY);
         } catch (Exception e) {
             log.error("rabbitMQ send error {}", e.getMessage());
         }
+    }
 
-        // 返回创建的订单ID
-        return order.getId();
+    private static MessagePostProcessor orderCreatedHeaders(Long userId) {
+        return message -> {
+            message.getMessageProperties().setHeader("user_INFO", userId);
+            return message;
+        };
     }
 
 
     /**
-     * 取消订单及其相关操作。
-     * 使用全局事务确保订单状态更新、支付状态更新和库存恢复的一致性。
+     * 取消订单及其相关操作，与批量取消相同。
      *
      * @param orderId 需要取消的订单ID。
      * @throws RuntimeException 如果更新支付状态或恢复库存失败，则抛出运行时异常。
      */
     @Override
-    @GlobalTransactional
     public void cancelOrder(Long orderId) {
-        // 更新订单状态为取消（状态码5）。
-        lambdaUpdate()
-                .set(Order::getStatus, 5)
-                .eq(Order::getId, orderId)
-                .update();
+        cancelOrders(Collections.singletonList(orderId));
+    }
+
+    /**
+     * 批量取消订单。
+     * 先锁定仍待支付的订单，用一条update改为已取消，只有这些订单会继续关闭支付单和归还库存，重复取消直接跳过。
+     * Seata模式下失败由全局事务回滚；Saga模式下失败时把这些订单改回待支付，由下一次取消重试，
+     * 关闭支付单可以重复执行，归还库存按订单id只执行一次，归还超时但实际已经提交时重试也不会重复归还。
+     */
+    @Override
+    public List<Long> cancelOrders(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 1.更新订单状态为取消（状态码5），只有待支付的订单可以取消
+        List<Long> cancelled = transactionTemplate.execute(status -> claimCancel(orderIds));
+        if (cancelled == null || cancelled.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 2.关闭支付单，归还库存
+        try {
+            closeAndRestore(cancelled);
+        } catch (RuntimeException e) {
+            if (!RootContext.inGlobalTransaction()) {
+                // 撤销取消，保持订单可以被再次取消
+                baseMapper.update(null, Wrappers.<Order>lambdaUpdate()
+                        .set(Order::getStatus, 1)
+                        .set(Order::getCloseTime, null)
+                        .in(Order::getId, cancelled)
+                        .eq(Order::getStatus, 5));
+            }
+            throw e;
+        }
+        return cancelled;
+    }
 
-        // 尝试更新支付状态为交易关闭。
+    private List<Long> claimCancel(Collection<Long> orderIds) {
+        // 锁定后再更新，update影响的正好是查出的订单
+        List<Long> unpaid = lambdaQuery()
+                .select(Order::getId)
+                .in(Order::getId, orderIds)
+                .eq(Order::getStatus, 1)
+                .last("FOR UPDATE")
+                .list()
+                .stream()
+                .map(Order::getId)
+                .collect(Collectors.toList());
+        if (!unpaid.isEmpty()) {
+            baseMapper.update(null, Wrappers.<Order>lambdaUpdate()
+                    .set(Order::getStatus, 5)
+                    .set(Order::getCloseTime, LocalDateTime.now())
+                    .in(Order::getId, unpaid)
+                    .eq(Order::getStatus, 1));
+        }
+        return unpaid;
+    }
+
+    private void closeAndRestore(List<Long> orderIds) {
+        // 一次更新所有订单的支付状态为交易关闭。
         try {
-            payClient.updateOrderStatusByOrderId(orderId, PayStatus.TRADE_CLOSED.getValue());
+            payClient.updateOrderStatusByOrderIds(orderIds, PayStatus.TRADE_CLOSED.getValue());
         } catch (Exception e) {
             throw new RuntimeException("更新订单状态失败", e);
         }
 
-        // 查询该订单的所有订单详情。
+        // 一次查询所有订单的订单详情，按订单分组。
         List<OrderDetail> list = detailService.lambdaQuery()
-                .eq(OrderDetail::getOrderId, orderId)
+                .in(OrderDetail::getOrderId, orderIds)
                 .list();
 
         // 如果订单详情为空，则无需进行后续操作。
         if (list == null || list.isEmpty())
             return;
 
-        // 将订单详情转换为DTO列表，为库存恢复操作做准备。
-        List<OrderDetailDTO> dtoList = list.stream().map(o -> {
-            OrderDetailDTO dto = new OrderDetailDTO();
-            BeanUtils.copyProperties(o, dto);
-            return dto;
-        }).collect(Collectors.toList());
+        Map<Long, List<OrderDetailDTO>> details = list.stream().collect(Collectors.groupingBy(
+                OrderDetail::getOrderId, LinkedHashMap::new, Collectors.mapping(o -> {
+                    OrderDetailDTO dto = new OrderDetailDTO();
+                    BeanUtils.copyProperties(o, dto);
+                    return dto;
+                }, Collectors.toList())));
 
-        // 尝试恢复订单所涉及商品的库存。
+        // 一次按订单恢复所有订单所涉及商品的库存。
         try {
-            itemClient.restoreStock(dtoList);
+            itemClient.restoreStockByOrders(details);
         } catch (Exception e) {
-            throw new RuntimeException("恢复库存失败");
+            throw new RuntimeException("恢复库存失败", e);
         }
     }
 
 
     @Override
     public void markOrderPaySuccess(Long orderId) {
-        Order order = new Order();
-        order.setId(orderId);
-        order.setStatus(2);
-        order.setPayTime(LocalDateTime.now());
-        updateById(order);
+        markOrdersPaySuccess(Collections.singletonList(orderId));
+    }
+
+    @Override
+    public int markOrdersPaySuccess(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.update(null, Wrappers.<Order>lambdaUpdate()
+                .set(Order::getStatus, 2)
+                .set(Order::getPayTime, LocalDateTime.now())
+                .in(Order::getId, orderIds)
+                .eq(Order::getStatus, 1));
+    }
+
+    @Override
+    public List<Order> syncPayStatus(Collection<Long> orderIds) {
+        // 1.查询待支付的订单，已支付或已取消的不再处理
+        List<Order> orders = lambdaQuery()
+                .select(Order::getId, Order::getCreateTime)
+                .in(Order::getId, orderIds)
+                .eq(Order::getStatus, 1)
+                .list();
+        if (orders.isEmpty()) {
+            return orders;
+        }
+        // 2.一次查询所有订单的支付状态
+        Set<Long> paidIds = payClient.queryPayOrdersByBizOrderNos(
+                        orders.stream().map(Order::getId).collect(Collectors.toList()))
+                .stream()
+                .filter(payOrder -> PayStatus.TRADE_SUCCESS.equalsValue(payOrder.getStatus()))
+                .map(PayOrderDTO::getBizOrderNo)
+                .collect(Collectors.toSet());
+        if (paidIds.isEmpty()) {
+            return orders;
+        }
+        // 3.已支付的订单一次更新
+        markOrdersPaySuccess(paidIds);
+        return orders.stream()
+                .filter(order -> !paidIds.contains(order.getId()))
+                .collect(Collectors.toList());
     }
 
     private List<OrderDetail> buildDetails(Long orderId, List<ItemDTO> items, Map<Long, Integer> numMap) {
@@ -0,0 +1,243 @@
+package com.hmall.trade.timeout;
+
+import com.hmall.common.utils.CollUtils;
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.domain.po.Order;
+import com.hmall.trade.placement.OrderPlacement;
+import com.hmall.trade.service.IOrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 订单支付超时检查，代替每个订单一条延迟消息。
+ * <p>
+ * 订单的create_time就是持久化的超时基准，按hm.trade.timeout.stages分阶段检查：
+ * 前面的阶段只检查是否已支付，最后一个阶段仍未支付则取消订单。
+ * 待检查的订单id放在内存时间轮中，每个tick取出到期的订单按批处理；
+ * 服务重启或其他实例创建的订单由定时恢复从数据库重新加载。
+ * <p>
+ * 多实例部署时按注册中心里的实例列表分区，每个实例只负责id % 实例数 = 自己序号的订单，
+ * 保证一个订单只在一个实例的时间轮中。不归自己的新订单交给所属实例在下次恢复时加载，
+ * 实例上下线导致分区变化时，已不归自己的订单在到期检查时丢弃，由新的所属实例接手。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "hm.trade.timeout", name = "enabled", havingValue = "true")
+public class OrderTimeoutScheduler {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final IOrderService orderService;
+    private final OrderPlacement orderPlacement;
+    private final ObjectProvider<DiscoveryClient> discoveryClientProvider;
+    private final ObjectProvider<Registration> registrationProvider;
+    private final TradeProperties.Timeout properties;
+    private final List<Duration> stages;
+    private final TimingWheel<Long> wheel;
+    /**
+     * 时间轮中的订单，检查阶段由create_time推算，不需要单独保存
+     */
+    private final Set<Long> tracked = ConcurrentHashMap.newKeySet();
+    /**
+     * 当前实例负责的分区，在恢复时按注册中心的实例列表刷新，还没确定时为null
+     */
+    private volatile Partition partition;
+
+    public OrderTimeoutScheduler(IOrderService orderService, OrderPlacement orderPlacement,
+                                 TradeProperties tradeProperties,
+                                 ObjectProvider<DiscoveryClient> discoveryClientProvider,
+                                 ObjectProvider<Registration> registrationProvider) {
+        this.orderService = orderService;
+        this.orderPlacement = orderPlacement;
+        this.discoveryClientProvider = discoveryClientProvider;
+        this.registrationProvider = registrationProvider;
+        this.properties = tradeProperties.getTimeout();
+        this.stages = properties.getStages();
+        this.wheel = new TimingWheel<>(properties.getTick().toMillis(), properties.getWheelSize(), System.currentTimeMillis());
+    }
+
+    /**
+     * 登记新订单，在订单事务提交后调用
+     */
+    public void schedule(Long orderId, LocalDateTime createTime) {
+        if (!owns(orderId)) {
+            // 不归当前实例的订单由所属实例恢复
+            return;
+        }
+        scheduleStage(orderId, createTime, 0);
+    }
+
+    @Scheduled(fixedDelayString = "${hm.trade.timeout.tick:1000}")
+    public void tick() {
+        List<Long> expired = wheel.advance(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return;
+        }
+        for (List<Long> batch : CollUtils.split(expired, properties.getBatchSize())) {
+            try {
+                checkBatch(batch);
+            } catch (Exception e) {
+                // 整批失败时稍后重试，阶段不变
+                log.error("订单超时检查失败，数量：{}", batch.size(), e);
+                long retryAt = System.currentTimeMillis() + properties.getRetryDelay().toMillis();
+                tracked.addAll(batch);
+                batch.forEach(orderId -> wheel.add(orderId, retryAt));
+            }
+        }
+    }
+
+    /**
+     * 从数据库加载当前实例负责的、超过第一阶段仍待支付、但不在时间轮中的订单
+     */
+    @Scheduled(fixedDelayString = "${hm.trade.timeout.recovery-interval:60000}")
+    public void recover() {
+        Partition current = refreshPartition();
+        if (current == null) {
+            log.debug("当前实例还未注册，跳过订单恢复");
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long lastId = 0;
+        int recovered = 0;
+        List<Order> orders;
+        do {
+            orders = orderService.lambdaQuery()
+                    .select(Order::getId, Order::getCreateTime)
+                    .eq(Order::getStatus, 1)
+                    .le(Order::getCreateTime, now.minus(stages.get(0)))
+                    .gt(Order::getId, lastId)
+                    .apply(current.total > 1, "id % {0} = {1}", current.total, current.index)
+                    .orderByAsc(Order::getId)
+                    .last("LIMIT " + properties.getBatchSize())
+                    .list();
+            for (Order order : orders) {
+                lastId = order.getId();
+                if (!tracked.contains(order.getId())) {
+                    scheduleStage(order.getId(), order.getCreateTime(), stageAt(order.getCreateTime(), now));
+                    recovered++;
+                }
+            }
+        } while (orders.size() >= properties.getBatchSize());
+        if (recovered > 0) {
+            log.info("从数据库恢复待检查的订单，数量：{}", recovered);
+        }
+    }
+
+    private void checkBatch(List<Long> batch) {
+        // 0.分区变化后已不归当前实例的订单直接丢弃，由新的所属实例恢复
+        batch.forEach(tracked::remove);
+        List<Long> orderIds = batch.stream().filter(this::owns).collect(Collectors.toList());
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        // 1.一次查询整批订单和支付状态，已支付的订单直接标记，已取消的不再检查
+        List<Order> orders = orderService.syncPayStatus(orderIds);
+        List<Long> expired = new ArrayList<>();
+        for (Order order : orders) {
+            // 2.还没到最后一个阶段，进入下一阶段
+            if (!isExpired(order.getCreateTime())) {
+                scheduleStage(order.getId(), order.getCreateTime(), stageAt(order.getCreateTime(), LocalDateTime.now()));
+                continue;
+            }
+            expired.add(order.getId());
+        }
+        if (expired.isEmpty()) {
+            log.debug("订单超时检查完成，到期：{}，待支付：{}", orderIds.size(), orders.size());
+            return;
+        }
+        // 3.最后一个阶段仍未支付，整批取消：一条update取消订单，一次关闭支付单，一次归还库存
+        try {
+            List<Long> cancelled = orderPlacement.cancelOrders(expired);
+            log.debug("订单超时检查完成，到期：{}，待支付：{}，取消：{}", orderIds.size(), orders.size(), cancelled.size());
+        } catch (Exception e) {
+            log.error("超时订单取消失败，稍后重试，数量：{}", expired.size(), e);
+            long retryAt = System.currentTimeMillis() + properties.getRetryDelay().toMillis();
+            tracked.addAll(expired);
+            expired.forEach(orderId -> wheel.add(orderId, retryAt));
+        }
+    }
+
+    private boolean owns(Long orderId) {
+        Partition current = partition;
+        return current == null || current.total <= 1 || orderId % current.total == current.index;
+    }
+
+    /**
+     * 按注册中心里同名服务的实例列表计算当前实例的分区，没有服务发现时只有一个分区
+     */
+    private Partition refreshPartition() {
+        DiscoveryClient discoveryClient = discoveryClientProvider.getIfAvailable();
+        Registration registration = registrationProvider.getIfAvailable();
+        if (discoveryClient == null || registration == null) {
+            partition = new Partition(1, 0);
+            return partition;
+        }
+        List<String> instances = discoveryClient.getInstances(registration.getServiceId()).stream()
+                .map(OrderTimeoutScheduler::instanceKey)
+                .distinct()
+                .sorted(Comparator.naturalOrder())
+                .collect(Collectors.toList());
+        int index = instances.indexOf(instanceKey(registration));
+        if (index < 0) {
+            return null;
+        }
+        Partition refreshed = new Partition(instances.size(), index);
+        Partition previous = partition;
+        if (previous == null || previous.total != refreshed.total || previous.index != refreshed.index) {
+            log.info("订单超时检查分区变化，实例数：{}，当前序号：{}", refreshed.total, refreshed.index);
+        }
+        partition = refreshed;
+        return refreshed;
+    }
+
+    private static String instanceKey(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    private void scheduleStage(Long orderId, LocalDateTime createTime, int stage) {
+        tracked.add(orderId);
+        wheel.add(orderId, createTime.plus(stages.get(stage)).atZone(ZONE).toInstant().toEpochMilli());
+    }
+
+    /**
+     * 下一个还没到的检查阶段，全部已过时返回最后一个阶段
+     */
+    private int stageAt(LocalDateTime createTime, LocalDateTime now) {
+        for (int i = 0; i < stages.size(); i++) {
+            if (createTime.plus(stages.get(i)).isAfter(now)) {
+                return i;
+            }
+        }
+        return stages.size() - 1;
+    }
+
+    private boolean isExpired(LocalDateTime createTime) {
+        return !createTime.plus(stages.get(stages.size() - 1)).isAfter(LocalDateTime.now());
+    }
+
+    private static class Partition {
+        private final int total;
+        private final int index;
+
+        private Partition(int total, int index) {
+            this.total = total;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.hmall.trade.timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分层时间轮。
+ * <p>
+ * 每层有wheelSize个格子，第一层每格tickMs，上一层每格是下一层一整圈的时间，超出当前层范围的任务放到上一层，
+ * 上一层的格子到期时把其中的任务重新放回下层，直到精确到tickMs。添加和推进都只是数组操作，与任务总数无关。
+ * 非线程安全的部分都在同步方法中。
+ */
+public class TimingWheel<T> {
+
+    private final Level root;
+    private final List<T> due = new ArrayList<>();
+    private int size;
+
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.root = new Level(tickMs, wheelSize, startMs);
+    }
+
+    /**
+     * 添加任务，已经到期的任务在下一次推进时返回
+     */
+    public synchronized void add(T item, long deadlineMs) {
+        Entry<T> entry = new Entry<>(item, deadlineMs);
+        if (!root.add(entry)) {
+            due.add(item);
+        }
+        size++;
+    }
+
+    /**
+     * 推进时间轮到nowMs，返回所有到期的任务
+     */
+    public synchronized List<T> advance(long nowMs) {
+        List<Entry<T>> flushed = new ArrayList<>();
+        root.advance(nowMs, flushed);
+        // 上层格子到期的任务重新放回，精确到期的直接返回
+        for (Entry<T> entry : flushed) {
+            if (!root.add(entry)) {
+                due.add(entry.item);
+            }
+        }
+        List<T> result = new ArrayList<>(due);
+        due.clear();
+        size -= result.size();
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static class Entry<T> {
+        private final T item;
+        private final long deadlineMs;
+
+        private Entry(T item, long deadlineMs) {
+            this.item = item;
+            this.deadlineMs = deadlineMs;
+        }
+    }
+
+    private class Level {
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final List<List<Entry<T>>> buckets;
+        private long currentTime;
+        private Level overflow;
+
+        private Level(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.currentTime = startMs - startMs % tickMs;
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * @return 任务已经到期时返回false
+         */
+        private boolean add(Entry<T> entry) {
+            if (entry.deadlineMs < currentTime + tickMs) {
+                return false;
+            }
+            if (entry.deadlineMs < currentTime + interval) {
+                buckets.get((int) ((entry.deadlineMs / tickMs) % wheelSize)).add(entry);
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level(interval, wheelSize, currentTime);
+            }
+            return overflow.add(entry);
+        }
+
+        private void advance(long nowMs, List<Entry<T>> flushed) {
+            while (currentTime + tickMs <= nowMs) {
+                currentTime += tickMs;
+                List<Entry<T>> bucket = buckets.get((int) ((currentTime / tickMs) % wheelSize));
+                flushed.addAll(bucket);
+                bucket.clear();
+            }
+            if (overflow != null) {
+                overflow.advance(nowMs, flushed);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.hmall.trade.placement;
+
+import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.common.utils.UserContext;
+import com.hmall.trade.TradeApplication;
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.domain.dto.OrderFormDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 下单吞吐量对比，需要连接真实的nacos、seata、item-service等环境。
+ * 分别以 -Dhm.trade.tx-mode=seata 和 -Dhm.trade.tx-mode=saga 运行，比较日志中的吞吐量和p99耗时。
+ * <pre>
+ * mvn -pl trade-service test -Dtest=OrderPlacementBenchmarkTest -Dbench.trade=true -Dhm.trade.tx-mode=saga
+ * </pre>
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "bench.trade", matches = "true")
+@SpringBootTest(properties = "spring.profiles.active=local", classes = TradeApplication.class)
+class OrderPlacementBenchmarkTest {
+
+    @Autowired
+    private OrderPlacement orderPlacement;
+    @Autowired
+    private TradeProperties tradeProperties;
+
+    @Value("${bench.user-id:1}")
+    private Long userId;
+    @Value("${bench.item-ids:317578,317580}")
+    private Long[] itemIds;
+    @Value("${bench.threads:16}")
+    private int threads;
+    @Value("${bench.orders-per-thread:50}")
+    private int ordersPerThread;
+
+    @Test
+    void benchmarkCreateOrder() throws InterruptedException {
+        // 预热，排除连接建立和类加载的影响
+        for (int i = 0; i < 10; i++) {
+            placeOrder();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Long> latencies = new ArrayList<>(threads * ordersPerThread);
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < ordersPerThread; i++) {
+                    long begin = System.nanoTime();
+                    try {
+                        placeOrder();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                    long elapsed = System.nanoTime() - begin;
+                    synchronized (latencies) {
+                        latencies.add(elapsed);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Long[] sorted = latencies.toArray(new Long[0]);
+        Arrays.sort(sorted);
+        log.info("tx-mode={}，订单数：{}，失败：{}，耗时：{}ms，吞吐量：{} orders/s，p50：{}ms，p99：{}ms",
+                tradeProperties.getTxMode(), sorted.length, failed.get(), elapsedMillis,
+                sorted.length * 1000L / Math.max(elapsedMillis, 1),
+                TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length / 2]),
+                TimeUnit.NANOSECONDS.toMillis(sorted[(int) (sorted.length * 0.99)]));
+    }
+
+    private void placeOrder() {
+        UserContext.setUser(userId);
+        try {
+            List<OrderDetailDTO> details = new ArrayList<>(itemIds.length);
+            for (Long itemId : itemIds) {
+                OrderDetailDTO detail = new OrderDetailDTO();
+                detail.setItemId(itemId);
+                detail.setNum(1);
+                details.add(detail);
+            }
+            OrderFormDTO orderFormDTO = new OrderFormDTO();
+            orderFormDTO.setAddressId(1L);
+            orderFormDTO.setPaymentType(3);
+            orderFormDTO.setDetails(details);
+            orderPlacement.createOrder(orderFormDTO);
+        } finally {
+            UserContext.removeUser();
+        }
+    }
+}
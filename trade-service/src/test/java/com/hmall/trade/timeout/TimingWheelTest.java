@@ -0,0 +1,55 @@
+package com.hmall.trade.timeout;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void testExpireWithinFirstLevel() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1000, 8, 0);
+        wheel.add(1L, 3000);
+        wheel.add(2L, 5500);
+
+        assertTrue(wheel.advance(2999).isEmpty());
+        assertEquals(List.of(1L), wheel.advance(3000));
+        // 精度为一格，5500在5000这一格到期
+        assertEquals(List.of(2L), wheel.advance(5000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testExpireThroughOverflowLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1000, 8, 0);
+        // 超出第一层8秒和第二层64秒的范围
+        wheel.add(1L, 20_000);
+        wheel.add(2L, 600_000);
+        assertEquals(2, wheel.size());
+
+        assertTrue(wheel.advance(19_999).isEmpty());
+        assertEquals(List.of(1L), wheel.advance(20_000));
+        assertTrue(wheel.advance(599_999).isEmpty());
+        assertEquals(List.of(2L), wheel.advance(600_000));
+    }
+
+    @Test
+    void testAddAlreadyExpired() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1000, 8, 10_000);
+        wheel.add(1L, 5000);
+        assertEquals(List.of(1L), wheel.advance(10_000));
+    }
+
+    @Test
+    void testAdvanceInLargeSteps() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1000, 8, 0);
+        for (long i = 1; i <= 100; i++) {
+            wheel.add(i, i * 1000);
+        }
+        assertEquals(50, wheel.advance(50_000).size());
+        assertEquals(50, wheel.advance(200_000).size());
+        assertEquals(0, wheel.size());
+    }
+}